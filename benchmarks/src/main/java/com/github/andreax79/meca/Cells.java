@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Secondary counter reported by every benchmark as cells/second next to the ops/second
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+@State(Scope.Thread)
+public class Cells {
+
+	public long cells;
+	
+	@Setup(Level.Iteration)
+	public void reset() {
+		cells = 0;
+	}
+	
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Rendering of one step as in Simulation: the cells, the side panel lines and the
+// PNG encoding of the finished band, written to a null stream
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class RenderBenchmark {
+
+	private static final int cellSize = 2;
+	
+	@Param({ "1000", "10000" })
+	private int width;
+	
+	@Param({ "0", "0.6" })
+	private double alpha;
+	
+	@Param
+	private ColorScheme colorScheme;
+	
+	private Row row;
+	private ArrayRow arrayRow;
+	private Renderer renderer;
+	private int t;
+	
+	@Setup
+	public void setup() throws IOException {
+		row = new Row(width, new Rule(6), Boundaries.periodic, UpdatePattern.synchronous, alpha, new RandomSource(1));
+		arrayRow = new ArrayRow(width, new Rule(6), Boundaries.periodic, UpdatePattern.synchronous, alpha, new RandomSource(1));
+		int imageWidth = (int) (cellSize * (width + 1) * 1.25);
+		renderer = new Renderer(new PngWriter(OutputStream.nullOutputStream(), imageWidth, Integer.MAX_VALUE), cellSize);
+	}
+	
+	@Benchmark
+	public void row(Cells cells) throws IOException {
+		cells.cells += width;
+		renderer.drawRow(row, colorScheme);
+		drawPanel(row);
+	}
+	
+	@Benchmark
+	public void arrayRow(Cells cells) throws IOException {
+		cells.cells += width;
+		if (colorScheme == ColorScheme.activationColor)
+			renderer.drawRow(row, colorScheme); // the activation needs the cells
+		else
+			renderer.drawRow(arrayRow, colorScheme);
+		drawPanel(arrayRow);
+	}
+	
+	private void drawPanel(Lattice lattice) throws IOException {
+		int x = cellSize * (width + 1);
+		int y = t * cellSize;
+		if (t > 0) {
+			renderer.drawLine(x + (int) (lattice.getValue() * cellSize / 4.0), y - cellSize, x + (int) (lattice.getValue() * cellSize / 4.0), y, Renderer.RED);
+			renderer.drawLine(x + (int) (lattice.getOnes() * cellSize / 4.0), y - cellSize, x + (int) (lattice.getOnes() * cellSize / 4.0), y, Renderer.BLUE);
+		}
+		renderer.endStep();
+		t++;
+	}
+	
+}
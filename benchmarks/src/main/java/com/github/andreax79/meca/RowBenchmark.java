@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// One time step of a row for every update pattern: Row(Row) against the ArrayRow engine
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class RowBenchmark {
+
+	@Param({ "1000", "100000" })
+	private int width;
+	
+	@Param({ "0", "0.6" })
+	private double alpha;
+	
+	@Param
+	private UpdatePattern updatePattern;
+	
+	private Row row;
+	private ArrayRow arrayRow;
+	
+	@Setup
+	public void setup() {
+		row = new Row(width, new Rule(6), Boundaries.periodic, updatePattern, alpha, new RandomSource(1));
+		arrayRow = new ArrayRow(width, new Rule(6), Boundaries.periodic, updatePattern, alpha, new RandomSource(1));
+	}
+	
+	@Benchmark
+	public Row row(Cells cells) {
+		cells.cells += width;
+		return row = new Row(row);
+	}
+	
+	@Benchmark
+	public ArrayRow arrayRow(Cells cells) {
+		cells.cells += width;
+		arrayRow.step();
+		return arrayRow;
+	}
+	
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Rule.compute on random neighborhoods, one cell at a time and 64 cells per word
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class RuleBenchmark {
+
+	private static final int CELLS = 4096;
+	
+	@Param({ "0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15" })
+	private int ruleNumber;
+	
+	private Rule rule;
+	private boolean self[] = new boolean[CELLS];
+	private boolean neighbor[] = new boolean[CELLS];
+	private long selfWords[] = new long[CELLS / 64];
+	private long neighborWords[] = new long[CELLS / 64];
+	
+	@Setup
+	public void setup() {
+		rule = new Rule(ruleNumber);
+		Random random = new Random(1);
+		for (int i = 0; i < CELLS; i++) {
+			self[i] = random.nextBoolean();
+			neighbor[i] = random.nextBoolean();
+		}
+		for (int w = 0; w < selfWords.length; w++) {
+			selfWords[w] = random.nextLong();
+			neighborWords[w] = random.nextLong();
+		}
+	}
+	
+	@Benchmark
+	public int compute(Cells cells) {
+		cells.cells += CELLS;
+		int ones = 0;
+		for (int i = 0; i < CELLS; i++)
+			if (rule.compute(self[i], neighbor[i]))
+				ones++;
+		return ones;
+	}
+	
+	@Benchmark
+	public long computeWords(Cells cells) {
+		cells.cells += CELLS;
+		long result = 0;
+		for (int w = 0; w < selfWords.length; w++)
+			result ^= rule.compute(selfWords[w], neighborWords[w]);
+		return result;
+	}
+	
+}
@@ -0,0 +1,416 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.random.RandomGenerator;
+
+// Struct-of-arrays row: only state and omega vary per cell, everything else is hoisted
+// to the row. The row is updated in place and step() does not allocate.
+// Cell i is stored at i + 1, the ghost cells 0 and n + 1 hold the states seen through
+// the boundaries at -1 and n and are refreshed once per step, so the synchronous kernel
+// reads its neighbors without any boundary switch or modulo.
+public class ArrayRow implements Lattice, ParallelStepper.Chunked, ChangeTracking, Serializable {
+
+	private static final long serialVersionUID = 2L;
+	
+	private int size;
+	private int leftSource;
+	private int rightSource;
+	// saved packed by writeObject, the next buffers are scratch
+	private transient boolean state[];
+	private transient boolean nextState[];
+	private transient double omega[];
+	private transient double nextOmega[];
+	private int t;
+	private Rule rule;
+	private Boundaries boundaries;
+	private UpdatePattern updatePattern;
+	private double alpha;
+	private double bigOmega;
+	private Scheduler scheduler;
+	private transient Scheduler.Updater updater;
+	private int d;
+	private transient OmegaKernel kernel;
+	private transient ParallelStepper stepper;
+	private RandomGenerator random;
+	private transient ChangeSet changes;
+	
+	public ArrayRow(int size, Rule rule, Boundaries boundaries, UpdatePattern updatePattern, boolean pattern[], double alpha) {
+		this(size, rule, boundaries, updatePattern, pattern, alpha, new RandomSource());
+	}
+
+	public ArrayRow(int size, Rule rule, Boundaries boundaries, UpdatePattern updatePattern, boolean pattern[], double alpha, RandomGenerator random) {
+		this(size, rule, boundaries, updatePattern, alpha, random);
+		if (pattern == null)
+			return;
+		for (int i = 0; i < size; i++)
+			setValue(i, pattern[i % pattern.length]);
+	}
+
+	public ArrayRow(int size, Rule rule, Boundaries boundaries, UpdatePattern updatePattern, String patternString, double alpha) {
+		this(size, rule, boundaries, updatePattern, patternString, alpha, new RandomSource());
+	}
+
+	public ArrayRow(int size, Rule rule, Boundaries boundaries, UpdatePattern updatePattern, String patternString, double alpha, RandomGenerator random) {
+		this(size, rule, boundaries, updatePattern, alpha, random);
+		if (patternString == null || patternString.length() == 0)
+			return;
+		if (patternString.equalsIgnoreCase("S")) { // single seed
+			for (int i = 0; i < size; i++)
+				setValue(i, false);
+			setValue(size / 2, true);
+			return;
+		}
+		if (patternString.equalsIgnoreCase("SI")) { // single seed inverse
+			for (int i = 0; i < size; i++)
+				setValue(i, true);
+			setValue(size / 2, false);
+			return;
+		}
+		for (int i = 0; i < size; i++)
+			setValue(i, patternString.charAt(i % patternString.length()) == '1');
+	}
+	
+	public ArrayRow(int size, Rule rule, Boundaries boundaries, UpdatePattern updatePattern, double alpha) {
+		this(size, rule, boundaries, updatePattern, alpha, new RandomSource());
+	}
+	
+	public ArrayRow(int size, Rule rule, Boundaries boundaries, UpdatePattern updatePattern, double alpha, RandomGenerator random) {
+		this.random = random;
+		this.rule = rule;
+		this.boundaries = boundaries;
+		this.updatePattern = updatePattern;
+		this.alpha = alpha;
+		this.bigOmega = 1.0 / (1.0 - alpha);
+		this.kernel = OmegaKernel.getInstance();
+		t = 0;
+		this.size = size;
+		setGhostSources();
+		state = new boolean[size + 2];
+		nextState = new boolean[size + 2];
+		omega = new double[size + 2];
+		nextOmega = new double[size + 2];
+		for (int i = 0; i < size; i++)
+			setValue(i, random.nextDouble() < 0.5);
+		if (updatePattern != UpdatePattern.synchronous) {
+			scheduler = Scheduler.create(updatePattern, size, random);
+			updater = new ArrayUpdater();
+		}
+	}
+	
+	public ArrayRow(Row row) {
+		this(row.getSize(), row.getRule(), row.getBoundaries(), row.getUpdatePattern(), row.getAlpha(), row.getRandom());
+		this.t = row.getT();
+		for (int i = 0; i < size; i++) {
+			state[i + 1] = row.getCell(i).getState();
+			omega[i + 1] = row.getCell(i).getOmega();
+		}
+		refreshGhosts();
+	}
+	
+	// the states 64 per long, the omegas only with memory (without it omega is the state)
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		for (int base = 0; base < size; base += 64) {
+			long word = 0;
+			for (int i = base; i < Math.min(size, base + 64); i++)
+				word |= (state[i + 1] ? 1L : 0L) << i;
+			out.writeLong(word);
+		}
+		if (alpha != 0)
+			for (int i = 1; i <= size; i++)
+				out.writeDouble(omega[i]);
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		state = new boolean[size + 2];
+		nextState = new boolean[size + 2];
+		omega = new double[size + 2];
+		nextOmega = new double[size + 2];
+		for (int base = 0; base < size; base += 64) {
+			long word = in.readLong();
+			for (int i = base; i < Math.min(size, base + 64); i++)
+				state[i + 1] = ((word >>> i) & 1L) != 0;
+		}
+		for (int i = 1; i <= size; i++)
+			omega[i] = alpha != 0 ? in.readDouble() : (state[i] ? 1 : 0);
+		refreshGhosts();
+		kernel = OmegaKernel.getInstance();
+		if (scheduler != null)
+			updater = new ArrayUpdater();
+	}
+	
+	public ArrayRow next() {
+		step();
+		return this;
+	}
+	
+	public void step() {
+		if (updatePattern == UpdatePattern.synchronous) {
+			// all cells are updated in parallel at each time step
+			if (stepper != null) {
+				stepper.advance(this, 1);
+			} else {
+				stepChunk(0, size);
+				endGeneration();
+			}
+			return;
+		}
+		t++;
+		d = (t % 2 == 0) ? 1 : -1;
+		if (changes != null)
+			changes.clear();
+		scheduler.step(updater);
+		refreshGhosts();
+	}
+	
+	public void setChanges(ChangeSet changes) {
+		if (changes != null && changes.getSize() != size)
+			throw new IllegalArgumentException("Change set size is not " + size);
+		this.changes = changes;
+	}
+	
+	private void record(int j, boolean oldState, double oldOmega) {
+		if (state[j] != oldState) {
+			changes.flip(j - 1);
+			changes.addOnes(state[j] ? 1 : -1);
+		}
+		changes.addValue((omega[j] - oldOmega) / bigOmega);
+	}
+	
+	private boolean getNeighbor(int j) {
+		// the ghosts are stale during an asynchronous sweep, they are read through their sources
+		if (j == 0)
+			return leftSource >= 0 && state[leftSource];
+		if (j == size + 1)
+			return rightSource >= 0 && state[rightSource];
+		return state[j];
+	}
+	
+	private class ArrayUpdater implements Scheduler.Updater {
+		
+		public void update(int i) {
+			boolean oldState = state[i + 1];
+			double oldOmega = omega[i + 1];
+			ArrayRow.this.update(i + 1, getNeighbor(i + 1 + d), state, omega, i + 1);
+			if (changes != null)
+				record(i + 1, oldState, oldOmega);
+		}
+		
+		// the next buffers are free outside synchronous steps, they hold the scratch slots
+		public void compute(int i, int k) {
+			ArrayRow.this.update(i + 1, getNeighbor(i + 1 + d), nextState, nextOmega, k);
+		}
+		
+		public void commit(int i, int k) {
+			boolean oldState = state[i + 1];
+			double oldOmega = omega[i + 1];
+			state[i + 1] = nextState[k];
+			omega[i + 1] = nextOmega[k];
+			if (changes != null)
+				record(i + 1, oldState, oldOmega);
+		}
+		
+	}
+	
+	public void advance(int generations) {
+		if (stepper != null && updatePattern == UpdatePattern.synchronous) {
+			stepper.advance(this, generations);
+		} else {
+			for (int g = 0; g < generations; g++)
+				step();
+		}
+	}
+	
+	public void setThreads(int threads) {
+		if (stepper != null)
+			stepper.shutdown();
+		stepper = threads > 1 ? new ParallelStepper(threads) : null;
+	}
+	
+	public int getChunkUnits() {
+		return size;
+	}
+	
+	public void stepChunk(int from, int to) {
+		// synchronous update of the cells [from, to) into the next buffers
+		if (updatePattern != UpdatePattern.synchronous)
+			throw new IllegalStateException("Only synchronous rows can be stepped in chunks");
+		int d = ((t + 1) % 2 == 0) ? 1 : -1;
+		kernel.update(rule, alpha, bigOmega, state, omega, d, nextState, nextOmega, from + 1, to + 1);
+	}
+	
+	public void endGeneration() {
+		if (changes != null) {
+			// whole words of changes, most cells may have changed
+			changes.clear();
+			double delta = 0;
+			int ones = 0;
+			for (int base = 0; base < size; base += 64) {
+				long changed = 0;
+				int end = Math.min(64, size - base);
+				for (int b = 0; b < end; b++) {
+					int j = base + b + 1;
+					changed |= (state[j] != nextState[j] ? 1L : 0L) << b;
+					ones += (nextState[j] ? 1 : 0) - (state[j] ? 1 : 0);
+					delta += nextOmega[j] - omega[j];
+				}
+				changes.setWord(base >>> 6, changed);
+			}
+			changes.addOnes(ones);
+			changes.addValue(delta / bigOmega);
+		}
+		boolean tmpState[] = state;
+		state = nextState;
+		nextState = tmpState;
+		double tmpOmega[] = omega;
+		omega = nextOmega;
+		nextOmega = tmpOmega;
+		refreshGhosts();
+		t++;
+	}
+	
+	private void update(int i, boolean neighbor, boolean targetState[], double targetOmega[], int k) {
+		// same arithmetic as Cell(Cell, Cell) on the stored cell i, the result goes to slot k of the target arrays
+		boolean s = rule.compute(state[i], neighbor);
+		double o = (omega[i] * alpha) + (s ? 1 : 0);
+		if (o != 0.5)
+			s = (o / bigOmega) > 0.5;
+		targetState[k] = s;
+		targetOmega[k] = o;
+	}
+	
+	private void setGhostSources() {
+		// the stored cells seen through the boundaries at -1 and n (see Row.getCell), -1 when fixed to false
+		int n = size;
+		switch (boundaries) {
+		case periodic:
+			leftSource = n;
+			rightSource = 1;
+			break;
+		case adiabatic:
+			leftSource = 1;
+			rightSource = n;
+			break;
+		case reflective:
+			leftSource = n > 1 ? 2 : 1;
+			rightSource = n > 1 ? n - 1 : n;
+			break;
+		case fixed:
+			leftSource = -1;
+			rightSource = -1;
+			break;
+		default:
+			throw new RuntimeException("Invalid boundaries");
+		}
+	}
+	
+	private void refreshGhosts() {
+		state[0] = leftSource >= 0 && state[leftSource];
+		state[size + 1] = rightSource >= 0 && state[rightSource];
+	}
+	
+	public int getT() {
+		return t;
+	}
+
+	public int getSize() {
+		return size;
+	}
+	
+	public Rule getRule() {
+		return rule;
+	}
+	
+	public Boundaries getBoundaries() {
+		return boundaries;
+	}
+	
+	public UpdatePattern getUpdatePattern() {
+		return updatePattern;
+	}
+	
+	public RandomGenerator getRandom() {
+		return random;
+	}
+	
+	public Scheduler getScheduler() {
+		return scheduler;
+	}
+	
+	public double getAlpha() {
+		return alpha;
+	}
+	
+	public double getBigOmega() {
+		return bigOmega;
+	}
+	
+	public double getOmega(int i) {
+		return omega[i + 1];
+	}
+	
+	public double getDensity() {
+		return getOnes() * 1d / getSize();
+	}
+	
+	public double getValue() {
+		double value = 0;
+		for (int i = 1; i <= size; i++)
+			value += omega[i] / bigOmega;
+		return value;
+	}
+	
+	public int getOnes() {
+		int c = 0;
+		for (int i = 1; i <= size; i++)
+			if (state[i])
+				c++;
+		return c;
+	}
+	
+	public void setValue(int i, boolean value) {
+		state[i + 1] = value;
+		omega[i + 1] = value ? bigOmega : 0;
+		refreshGhosts();
+	}
+	
+	// cells -1 and n are the ghost cells
+	public boolean getValue(int i) {
+		return state[i + 1];
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(size);
+		for (int i = 1; i <= size; i++)
+			sb.append(state[i] ? '1' : '0');
+		return sb.toString();
+	}
+	
+}
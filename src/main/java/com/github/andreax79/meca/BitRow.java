@@ -0,0 +1,312 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+// Bit-packed synchronous engine for alpha = 0: cell i is bit (i % 64) of word (i / 64)
+public class BitRow implements Lattice, ParallelStepper.Chunked, ChangeTracking, Serializable {
+
+	private static final long serialVersionUID = 1L;
+	
+	private long words[];
+	private transient long nextWords[];
+	private int size;
+	private int t;
+	private Rule rule;
+	private Boundaries boundaries;
+	private long lastMask;
+	private transient ParallelStepper stepper;
+	private transient ChangeSet changes;
+	
+	public BitRow(Lattice row) {
+		this(row.getSize(), row.getRule(), row.getBoundaries());
+		if (row.getUpdatePattern() != UpdatePattern.synchronous)
+			throw new IllegalArgumentException("BitRow supports only the synchronous update pattern");
+		this.t = row.getT();
+		for (int i = 0; i < size; i++)
+			if (row.getValue(i))
+				words[i >> 6] |= 1L << i;
+	}
+	
+	public BitRow(BitRow row) {
+		this(row.size, row.rule, row.boundaries);
+		this.t = row.t;
+		System.arraycopy(row.words, 0, words, 0, words.length);
+	}
+	
+	public BitRow(int size, Rule rule, Boundaries boundaries) {
+		this.size = size;
+		this.rule = rule;
+		this.boundaries = boundaries;
+		words = new long[(size + 63) >> 6];
+		nextWords = new long[words.length];
+		lastMask = (size & 63) == 0 ? -1L : (1L << size) - 1;
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		nextWords = new long[words.length];
+	}
+	
+	public BitRow next() {
+		step();
+		return this;
+	}
+	
+	public void step() {
+		if (stepper != null) {
+			stepper.advance(this, 1);
+		} else {
+			stepChunk(0, words.length);
+			endGeneration();
+		}
+	}
+	
+	public void advance(int generations) {
+		if (stepper != null) {
+			stepper.advance(this, generations);
+		} else {
+			for (int g = 0; g < generations; g++)
+				step();
+		}
+	}
+	
+	public void setThreads(int threads) {
+		if (stepper != null)
+			stepper.shutdown();
+		stepper = threads > 1 ? new ParallelStepper(threads) : null;
+	}
+	
+	public int getChunkUnits() {
+		return words.length;
+	}
+	
+	public void stepChunk(int from, int to) {
+		// computes the words [from, to) of the next generation
+		int last = words.length - 1;
+		if ((t + 1) % 2 == 0) {
+			// right neighbor: shift down, carrying the low bit of the following word
+			int end = Math.min(to, last);
+			for (int w = from; w < end; w++) {
+				long self = words[w];
+				nextWords[w] = rule.compute(self, (self >>> 1) | (words[w + 1] << 63));
+			}
+			if (to > last) {
+				long self = words[last];
+				long neighbor = (self >>> 1) | (rightEdge() << (size - 1));
+				nextWords[last] = rule.compute(self, neighbor) & lastMask;
+			}
+		} else {
+			// left neighbor: shift up, carrying the high bit of the previous word
+			long carry = from == 0 ? leftEdge() : words[from - 1] >>> 63;
+			for (int w = from; w < to; w++) {
+				long self = words[w];
+				nextWords[w] = rule.compute(self, (self << 1) | carry);
+				carry = self >>> 63;
+			}
+			if (to > last)
+				nextWords[last] &= lastMask;
+		}
+	}
+	
+	public void setChanges(ChangeSet changes) {
+		if (changes != null && changes.getSize() != size)
+			throw new IllegalArgumentException("Change set size is not " + size);
+		this.changes = changes;
+	}
+	
+	public void endGeneration() {
+		if (changes != null) {
+			// without memory omega / bigOmega is the state: the value changes with the ones
+			changes.clear();
+			int delta = 0;
+			for (int w = 0; w < words.length; w++) {
+				changes.setWord(w, words[w] ^ nextWords[w]);
+				delta += Long.bitCount(nextWords[w]) - Long.bitCount(words[w]);
+			}
+			changes.addOnes(delta);
+			changes.addValue(delta);
+		}
+		long tmp[] = words;
+		words = nextWords;
+		nextWords = tmp;
+		t++;
+	}
+	
+	private long leftEdge() {
+		int i = leftEdgeIndex(size, boundaries);
+		return i < 0 ? 0 : bit(i);
+	}
+	
+	private long rightEdge() {
+		int i = rightEdgeIndex(size, boundaries);
+		return i < 0 ? 0 : bit(i);
+	}
+	
+	// cell seen by cell 0 as its left neighbor (see Row.getCell(-1)), -1 for a fixed false cell
+	static int leftEdgeIndex(int size, Boundaries boundaries) {
+		switch (boundaries) {
+		case periodic:
+			return size - 1;
+		case adiabatic:
+			return 0;
+		case reflective:
+			return size > 1 ? 1 : 0;
+		case fixed:
+			return -1;
+		default:
+			throw new RuntimeException("Invalid boundaries");
+		}
+	}
+	
+	// cell seen by cell size-1 as its right neighbor (see Row.getCell(size)), -1 for a fixed false cell
+	static int rightEdgeIndex(int size, Boundaries boundaries) {
+		switch (boundaries) {
+		case periodic:
+			return 0;
+		case adiabatic:
+			return size - 1;
+		case reflective:
+			return size > 1 ? size - 2 : 0;
+		case fixed:
+			return -1;
+		default:
+			throw new RuntimeException("Invalid boundaries");
+		}
+	}
+	
+	// one generation of a row of at most 64 cells packed in a single word
+	public static long step(long self, int size, Rule rule, Boundaries boundaries, boolean rightNeighbor) {
+		long mask = size == 64 ? -1L : (1L << size) - 1;
+		long neighbor;
+		if (rightNeighbor) {
+			int i = rightEdgeIndex(size, boundaries);
+			neighbor = (self >>> 1) | ((i < 0 ? 0 : (self >>> i) & 1L) << (size - 1));
+		} else {
+			int i = leftEdgeIndex(size, boundaries);
+			neighbor = (self << 1) | (i < 0 ? 0 : (self >>> i) & 1L);
+		}
+		return rule.compute(self, neighbor) & mask;
+	}
+	
+	private long bit(int i) {
+		return (words[i >> 6] >>> i) & 1L;
+	}
+	
+	public int getT() {
+		return t;
+	}
+	
+	public int getSize() {
+		return size;
+	}
+	
+	public Rule getRule() {
+		return rule;
+	}
+	
+	public Boundaries getBoundaries() {
+		return boundaries;
+	}
+	
+	public UpdatePattern getUpdatePattern() {
+		return UpdatePattern.synchronous;
+	}
+	
+	public int getOnes() {
+		int c = 0;
+		for (int w = 0; w < words.length; w++)
+			c += Long.bitCount(words[w]);
+		return c;
+	}
+	
+	public double getDensity() {
+		return getOnes() * 1d / getSize();
+	}
+	
+	public double getValue() {
+		// without memory omega / bigOmega is the cell state
+		return getOnes();
+	}
+	
+	public boolean getValue(int i) {
+		return bit(i) != 0;
+	}
+	
+	public void setValue(int i, boolean value) {
+		if (value)
+			words[i >> 6] |= 1L << i;
+		else
+			words[i >> 6] &= ~(1L << i);
+	}
+	
+	// cells 64*w to 64*w+63, cell i is bit i % 64
+	public long getWord(int w) {
+		return words[w];
+	}
+	
+	// copies the cells and the time step of a row of the same size
+	public void set(BitRow row) {
+		if (row.size != size)
+			throw new IllegalArgumentException("Rows of different size");
+		System.arraycopy(row.words, 0, words, 0, words.length);
+		t = row.t;
+	}
+	
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + Arrays.hashCode(words);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		BitRow other = (BitRow) obj;
+		if (size != other.size)
+			return false;
+		if (!Arrays.equals(words, other.words))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(size);
+		for (int i=0; i < size; i++)
+			sb.append(getValue(i) ? '1' : '0');
+		return sb.toString();
+	}
+	
+}
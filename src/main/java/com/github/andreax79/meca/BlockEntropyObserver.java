@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import java.util.Arrays;
+
+// Shannon entropy (in bits) of the blocks of 1 to maxBlock consecutive cells inside the row.
+// Flipping a cell moves each window covering it from a block to another: the counts of the
+// blocks follow the moves, O(changes * maxBlock^2), and the entropies are computed from the
+// 2^maxBlock counts, not from the row. When most of the row changed the blocks are counted again
+public class BlockEntropyObserver implements Observer {
+
+	public static final int MAX_BLOCK = 8;
+
+	private int maxBlock;
+	private int size;
+	private long cells[];
+	private int counts[][];
+	private double entropy[];
+	private Stats stats[];
+
+	public BlockEntropyObserver() {
+		this(MAX_BLOCK);
+	}
+
+	public BlockEntropyObserver(int maxBlock) {
+		if (maxBlock < 1 || maxBlock > MAX_BLOCK)
+			throw new IllegalArgumentException("Invalid block size (1-" + MAX_BLOCK + ")");
+		this.maxBlock = maxBlock;
+	}
+
+	public void start(Lattice lattice) {
+		size = lattice.getSize();
+		cells = new long[(size + 63) >> 6];
+		for (int i = 0; i < size; i++)
+			if (lattice.getValue(i))
+				cells[i >>> 6] |= 1L << i;
+		counts = new int[maxBlock + 1][];
+		entropy = new double[maxBlock + 1];
+		stats = new Stats[maxBlock + 1];
+		for (int k = 1; k <= maxBlock; k++) {
+			counts[k] = new int[1 << k];
+			stats[k] = new Stats();
+		}
+		count();
+	}
+
+	// the largest blocks with a rolling window, the smaller ones by dropping their last cell,
+	// plus the one window that only fits the smaller size at the end of the row
+	private void count() {
+		int top[] = counts[maxBlock];
+		Arrays.fill(top, 0);
+		if (size >= maxBlock) {
+			int block = block(0, maxBlock);
+			for (int s = 0; ; s++) {
+				top[block]++;
+				if (s + maxBlock >= size)
+					break;
+				block = (block >>> 1) | (int) ((cells[(s + maxBlock) >>> 6] >>> (s + maxBlock)) & 1L) << (maxBlock - 1);
+			}
+		}
+		for (int k = maxBlock - 1; k >= 1; k--) {
+			int longer[] = counts[k + 1];
+			int blocks[] = counts[k];
+			for (int p = 0; p < blocks.length; p++)
+				blocks[p] = longer[p] + longer[p | (1 << k)];
+			if (size - k >= 0)
+				blocks[block(size - k, k)]++;
+		}
+		for (int k = 1; k <= maxBlock; k++)
+			entropy[k] = entropy(k);
+	}
+
+	public void step(Lattice lattice, ChangeSet changes) {
+		// a flip moves maxBlock (maxBlock + 1) / 2 windows, counting again costs maxBlock per cell
+		if ((long) changes.getCount() * (maxBlock + 1) > 2L * size) {
+			for (int w = 0; w < cells.length; w++)
+				cells[w] ^= changes.getWord(w);
+			count();
+		} else {
+			for (int i = changes.nextChanged(0); i >= 0; i = changes.nextChanged(i + 1))
+				flip(i);
+			for (int k = 1; k <= maxBlock; k++)
+				entropy[k] = entropy(k);
+		}
+		for (int k = 1; k <= maxBlock; k++)
+			stats[k].add(entropy[k]);
+	}
+
+	private void flip(int i) {
+		for (int k = 1; k <= maxBlock; k++) {
+			int last = Math.min(i, size - k);
+			for (int s = Math.max(0, i - k + 1); s <= last; s++) {
+				int block = block(s, k);
+				counts[k][block]--;
+				counts[k][block ^ (1 << (i - s))]++;
+			}
+		}
+		cells[i >>> 6] ^= 1L << i;
+	}
+
+	private double entropy(int k) {
+		int windows = size - k + 1;
+		if (windows <= 0)
+			return 0;
+		double sum = 0;
+		for (int c : counts[k])
+			if (c > 0)
+				sum += c * Math.log(c);
+		return (Math.log(windows) - sum / windows) / Math.log(2);
+	}
+
+	// the k cells from s, cell s in the lowest bit
+	private int block(int s, int k) {
+		int w = s >>> 6;
+		int offset = s & 63;
+		long bits = cells[w] >>> offset;
+		if (offset + k > 64)
+			bits |= cells[w + 1] << (64 - offset);
+		return (int) bits & ((1 << k) - 1);
+	}
+
+	public int getMaxBlock() {
+		return maxBlock;
+	}
+
+	// number of occurrences of the block (cell s + j in bit j) of k cells in the row
+	public int getCount(int k, int block) {
+		return counts[k][block];
+	}
+
+	public double getEntropy(int k) {
+		return entropy[k];
+	}
+
+	// the entropies of the blocks of k cells after every step
+	public Stats getStats(int k) {
+		return stats[k];
+	}
+
+}
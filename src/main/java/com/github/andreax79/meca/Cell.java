@@ -22,13 +22,25 @@
 package com.github.andreax79.meca;
 
 import java.awt.Color;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntFunction;
+import java.util.random.RandomGenerator;
 
-public class Cell {
+public class Cell implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final int ACTIVATION_NONE = -1;
+	private static final int ACTIVATION_BOTH = 3;
 
 	private int t;
 	private boolean state;
 	private Rule rule;
-	private Color color;
+	private int activation;
 	private double omega;
 	private double bigOmega;
 	private double alpha; // 0.5 0.55
@@ -38,14 +50,27 @@ public class Cell {
 	}
 	
 	public Cell(Rule rule, double alpha) {
+		this(rule, alpha, ThreadLocalRandom.current());
+	}
+	
+	public Cell(Rule rule, double alpha, RandomGenerator random) {
 		this.rule = rule;
 		this.alpha = alpha;
-		this.state = Math.random() < 0.5;
-		this.color = state ? Color.black : Color.white;
+		this.state = random.nextDouble() < 0.5;
+		this.activation = state ? ACTIVATION_BOTH : ACTIVATION_NONE;
 		this.bigOmega = 1.0 / (1.0 - alpha);
 		this.omega = this.state ? bigOmega : 0;
 	}
 	
+	private Cell(Rule rule, double alpha, boolean state, int activation, double omega) {
+		this.rule = rule;
+		this.alpha = alpha;
+		this.bigOmega = 1.0 / (1.0 - alpha);
+		this.state = state;
+		this.activation = activation;
+		this.omega = omega;
+	}
+	
 	public Cell(Cell self, Cell neighbor) {
 		this.alpha = self.alpha;
 		this.rule = self.rule;
@@ -60,14 +85,10 @@ public class Cell {
 		if (this.omega != 0.5)
 			this.state = (this.omega / this.bigOmega) > 0.5;
 
-		if (state && color == null) {
-			if (self.getState() && neighbor.getState()) color = Color.black;
-			else if (!self.getState() && neighbor.getState()) color = Color.green;
-			else if (self.getState() && !neighbor.getState()) color = Color.red;
-			else color = Color.blue;
-		} else {
-			color = Color.white;
-		}
+		if (state)
+			activation = (self.getState() ? 2 : 0) | (neighbor.getState() ? 1 : 0);
+		else
+			activation = ACTIVATION_NONE;
 	}
 	
 	public boolean getState() {
@@ -77,11 +98,27 @@ public class Cell {
 	public void setState(boolean state) {
 		this.state = state;
 		this.omega = this.state ? bigOmega : 0;
-		this.color = state ? Color.black : Color.white;
+		this.activation = state ? ACTIVATION_BOTH : ACTIVATION_NONE;
+	}
+	
+	// neighborhood that switched the cell on: (self ? 2 : 0) | (neighbor ? 1 : 0), or ACTIVATION_NONE when off
+	public int getActivation() {
+		return activation;
 	}
 	
 	public Color getColor() {
-		return color;
+		switch (activation) {
+		case 3:
+			return Color.black;
+		case 1:
+			return Color.green;
+		case 2:
+			return Color.red;
+		case 0:
+			return Color.blue;
+		default:
+			return Color.white;
+		}
 	}
 
 	public Color getOmegaColor() {
@@ -99,6 +136,10 @@ public class Cell {
 		return omega;
 	}
 
+	public double getAlpha() {
+		return alpha;
+	}
+
 	public Rule getRule() {
 		return rule;
 	}
@@ -107,6 +148,57 @@ public class Cell {
 		this.rule = rule;
 	}
 	
+	// compact snapshot of the cells of a row, which share rule and alpha: the states 64 per long,
+	// the activations 2 bits each (ACTIVATION_NONE for the cells that are off), the omegas only
+	// with memory (without it omega is the state)
+	static void writeCells(ObjectOutputStream out, int size, IntFunction<Cell> cells) throws IOException {
+		Cell first = cells.apply(0);
+		out.writeInt(size);
+		out.writeObject(first.rule);
+		out.writeDouble(first.alpha);
+		for (int base = 0; base < size; base += 64) {
+			long word = 0;
+			for (int i = base; i < Math.min(size, base + 64); i++)
+				word |= (cells.apply(i).state ? 1L : 0L) << i;
+			out.writeLong(word);
+		}
+		for (int base = 0; base < size; base += 32) {
+			long word = 0;
+			for (int i = base; i < Math.min(size, base + 32); i++) {
+				Cell cell = cells.apply(i);
+				word |= (long) (cell.state ? cell.activation : 0) << (2 * (i - base));
+			}
+			out.writeLong(word);
+		}
+		if (first.alpha != 0)
+			for (int i = 0; i < size; i++)
+				out.writeDouble(cells.apply(i).omega);
+	}
+	
+	static Cell[] readCells(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		int size = in.readInt();
+		Rule rule = (Rule) in.readObject();
+		double alpha = in.readDouble();
+		boolean states[] = new boolean[size];
+		for (int base = 0; base < size; base += 64) {
+			long word = in.readLong();
+			for (int i = base; i < Math.min(size, base + 64); i++)
+				states[i] = ((word >>> i) & 1L) != 0;
+		}
+		int activations[] = new int[size];
+		for (int base = 0; base < size; base += 32) {
+			long word = in.readLong();
+			for (int i = base; i < Math.min(size, base + 32); i++)
+				activations[i] = states[i] ? (int) (word >>> (2 * (i - base))) & 3 : ACTIVATION_NONE;
+		}
+		Cell cells[] = new Cell[size];
+		for (int i = 0; i < size; i++) {
+			double omega = alpha != 0 ? in.readDouble() : (states[i] ? 1 : 0);
+			cells[i] = new Cell(rule, alpha, states[i], activations[i], omega);
+		}
+		return cells;
+	}
+	
 	@Override
 	public int hashCode() {
 		final int prime = 31;
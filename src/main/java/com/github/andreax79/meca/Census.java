@@ -0,0 +1,256 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Exhaustive analysis of a synchronous rule without memory over every configuration of a
+// small row. A configuration is an int (bit i is cell i) and the map F takes it two
+// generations ahead (left neighbor, then right neighbor), so F is the same at every even t.
+// The functional graph of F gives the attractors, their basins, the Garden-of-Eden states
+// (without a preimage) and the transient length of every state.
+public class Census {
+
+	public static final int MAX_SIZE = 30;
+	private static final int CHUNK = 1 << 16;
+	
+	private int size;
+	private Rule rule;
+	private Boundaries boundaries;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	
+	private int attractors;
+	private int periods[];
+	private int basins[];
+	private long gardenOfEden;
+	private long transients[];
+	private int maxTransient;
+	
+	public Census(int size, Rule rule, Boundaries boundaries) {
+		if (size < 1 || size > MAX_SIZE)
+			throw new IllegalArgumentException("Census width must be between 1 and " + MAX_SIZE);
+		this.size = size;
+		this.rule = rule;
+		this.boundaries = boundaries;
+	}
+	
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Invalid parallelism");
+		this.parallelism = parallelism;
+	}
+
+	// F, two generations of the configuration x from an even t
+	public int map(int x) {
+		long y = BitRow.step(x, size, rule, boundaries, false);
+		return (int) BitRow.step(y, size, rule, boundaries, true);
+	}
+	
+	public void run() {
+		int states = 1 << size;
+		int map[] = new int[states];
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new MapTask(map, 0, states));
+		} finally {
+			pool.shutdown();
+		}
+		
+		// Garden of Eden: the states outside the image of F
+		long image[] = new long[(states + 63) >>> 6];
+		for (int x = 0; x < states; x++)
+			image[map[x] >>> 6] |= 1L << map[x];
+		long reached = 0;
+		for (int w = 0; w < image.length; w++)
+			reached += Long.bitCount(image[w]);
+		gardenOfEden = states - reached;
+		image = null;
+		
+		// follow F from every unlabelled state: label[x] is the attractor of x plus one (-1 while
+		// x is on the current walk), once x is labelled map[x] holds its transient length instead
+		int label[] = new int[states];
+		attractors = 0;
+		periods = new int[16];
+		basins = new int[16];
+		transients = new long[16];
+		maxTransient = 0;
+		for (int s = 0; s < states; s++) {
+			if (label[s] != 0)
+				continue;
+			int x = s;
+			int length = 0;
+			while (label[x] == 0) {
+				label[x] = -1;
+				x = map[x];
+				length++;
+			}
+			int attractor;
+			int depth;
+			if (label[x] == -1) {
+				// the walk closed a new cycle at x
+				attractor = attractors++;
+				if (attractor == periods.length) {
+					periods = Arrays.copyOf(periods, attractor * 2);
+					basins = Arrays.copyOf(basins, attractor * 2);
+				}
+				int y = x;
+				int period = 0;
+				do {
+					int next = map[y];
+					map[y] = 0;
+					label[y] = attractor + 1;
+					y = next;
+					period++;
+				} while (y != x);
+				periods[attractor] = period;
+				basins[attractor] = period;
+				transients[0] += period;
+				length -= period;
+				depth = 0;
+			} else {
+				attractor = label[x] - 1;
+				depth = map[x];
+			}
+			// the tail from s, length steps before x
+			int y = s;
+			for (int k = 0; k < length; k++) {
+				int next = map[y];
+				int d = depth + length - k;
+				map[y] = d;
+				label[y] = attractor + 1;
+				basins[attractor]++;
+				if (d >= transients.length)
+					transients = Arrays.copyOf(transients, Math.max(d + 1, transients.length * 2));
+				transients[d]++;
+				if (d > maxTransient)
+					maxTransient = d;
+				y = next;
+			}
+		}
+	}
+	
+	public int getSize() {
+		return size;
+	}
+
+	public Rule getRule() {
+		return rule;
+	}
+
+	public Boundaries getBoundaries() {
+		return boundaries;
+	}
+
+	public long getStates() {
+		return 1L << size;
+	}
+	
+	public int getAttractors() {
+		return attractors;
+	}
+	
+	// period of an attractor, in applications of F
+	public int getPeriod(int attractor) {
+		return periods[attractor];
+	}
+	
+	// states reaching an attractor, the cycle included
+	public int getBasin(int attractor) {
+		return basins[attractor];
+	}
+	
+	public long getGardenOfEden() {
+		return gardenOfEden;
+	}
+	
+	public int getMaxTransient() {
+		return maxTransient;
+	}
+	
+	// number of states by transient length, in applications of F
+	public long[] getTransients() {
+		return Arrays.copyOf(transients, maxTransient + 1);
+	}
+	
+	public void print(PrintStream out) {
+		out.println("Rule: " + rule.getNumber() + " Boundaries: " + boundaries + " Width: " + size
+				+ " States: " + getStates() + " Attractors: " + attractors + " Garden of Eden: " + gardenOfEden
+				+ " Max transient: " + maxTransient);
+		// attractors grouped by period: number of attractors, states in their basins, largest basin
+		Map<Integer, long[]> byPeriod = new TreeMap<Integer, long[]>();
+		for (int a = 0; a < attractors; a++) {
+			long row[] = byPeriod.get(periods[a]);
+			if (row == null)
+				byPeriod.put(periods[a], row = new long[3]);
+			row[0]++;
+			row[1] += basins[a];
+			row[2] = Math.max(row[2], basins[a]);
+		}
+		out.println("period\tattractors\tbasins\tlargest");
+		for (Map.Entry<Integer, long[]> entry : byPeriod.entrySet()) {
+			long row[] = entry.getValue();
+			out.println(entry.getKey() + "\t" + row[0] + "\t" + row[1] + "\t" + row[2]);
+		}
+		out.println("transient\tstates");
+		for (int d = 0; d <= maxTransient; d++)
+			if (transients[d] != 0)
+				out.println(d + "\t" + transients[d]);
+	}
+	
+	private class MapTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		
+		private int map[];
+		private int from;
+		private int to;
+		
+		MapTask(int map[], int from, int to) {
+			this.map = map;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from > CHUNK) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new MapTask(map, from, middle), new MapTask(map, middle, to));
+				return;
+			}
+			for (int x = from; x < to; x++)
+				map[x] = map(x);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+// The cells whose state changed in one step, 64 per word, and the changes of the number of
+// ones and of the sum of omega / bigOmega. A second level has one bit per word that may be non-zero, so clearing
+// and walking the changes of a sparse step don't touch the whole row.
+public class ChangeSet {
+
+	private int size;
+	private long words[];
+	private long summary[];
+	private int onesDelta;
+	private double valueDelta;
+	
+	public ChangeSet(int size) {
+		this.size = size;
+		words = new long[(size + 63) >> 6];
+		summary = new long[(words.length + 63) >> 6];
+	}
+	
+	public int getSize() {
+		return size;
+	}
+	
+	public void clear() {
+		for (int s = 0; s < summary.length; s++) {
+			for (long bits = summary[s]; bits != 0; bits &= bits - 1)
+				words[(s << 6) + Long.numberOfTrailingZeros(bits)] = 0;
+			summary[s] = 0;
+		}
+		onesDelta = 0;
+		valueDelta = 0;
+	}
+	
+	// cell i changed; a cell changed twice in the same step is back to its state
+	public void flip(int i) {
+		int w = i >>> 6;
+		words[w] ^= 1L << i;
+		summary[w >>> 6] |= 1L << w;
+	}
+	
+	// the cells of word w that changed
+	public void setWord(int w, long changed) {
+		words[w] = changed;
+		if (changed != 0)
+			summary[w >>> 6] |= 1L << w;
+	}
+	
+	public long getWord(int w) {
+		return words[w];
+	}
+	
+	public void addOnes(int delta) {
+		onesDelta += delta;
+	}
+	
+	public int getOnesDelta() {
+		return onesDelta;
+	}
+	
+	public void addValue(double delta) {
+		valueDelta += delta;
+	}
+	
+	// change of the sum of omega / bigOmega over the row
+	public double getValueDelta() {
+		return valueDelta;
+	}
+	
+	public boolean isChanged(int i) {
+		return (words[i >>> 6] & (1L << i)) != 0;
+	}
+	
+	// the first changed cell from i on, -1 if none
+	public int nextChanged(int i) {
+		int w = i >>> 6;
+		if (w >= words.length)
+			return -1;
+		long word = words[w] & (-1L << i);
+		while (word == 0) {
+			w = nextWord(w + 1);
+			if (w < 0)
+				return -1;
+			word = words[w];
+		}
+		return (w << 6) + Long.numberOfTrailingZeros(word);
+	}
+	
+	private int nextWord(int w) {
+		int s = w >>> 6;
+		if (s >= summary.length)
+			return -1;
+		long bits = summary[s] & (-1L << w);
+		while (bits == 0) {
+			if (++s >= summary.length)
+				return -1;
+			bits = summary[s];
+		}
+		return (s << 6) + Long.numberOfTrailingZeros(bits);
+	}
+	
+	// number of changed cells, the Hamming distance between the rows before and after the step
+	public int getCount() {
+		int count = 0;
+		for (int s = 0; s < summary.length; s++)
+			for (long bits = summary[s]; bits != 0; bits &= bits - 1)
+				count += Long.bitCount(words[(s << 6) + Long.numberOfTrailingZeros(bits)]);
+		return count;
+	}
+	
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Snapshot of a run without output: the parameters, the row (cells, omega, t, scheduler
+// and random state, shared as in the running objects) and the statistics collected so
+// far. A resumed run continues exactly as the interrupted one would have.
+public class Checkpoint implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	
+	private Configuration configuration;
+	private Lattice lattice;
+	private Stats stats;
+	
+	public Checkpoint(Configuration configuration, Lattice lattice, Stats stats) {
+		if (!(lattice instanceof Serializable))
+			throw new IllegalArgumentException("The row can't be saved");
+		this.configuration = configuration;
+		this.lattice = lattice;
+		this.stats = stats;
+	}
+	
+	public Configuration getConfiguration() {
+		return configuration;
+	}
+
+	public Lattice getLattice() {
+		return lattice;
+	}
+
+	public Stats getStats() {
+		return stats;
+	}
+
+	// the step the run continues from
+	public int getT() {
+		return lattice.getT();
+	}
+	
+	// writes to a temporary file next to the target, syncs it to the disk, then moves it in
+	// place and syncs the directory, so a crash (even of the machine) while saving leaves the
+	// previous checkpoint or the new one, never a torn file
+	public void write(Path file) throws IOException {
+		Path dir = file.toAbsolutePath().getParent();
+		Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+				ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+				out.writeObject(this);
+				out.flush();
+				channel.force(true);
+			}
+			try {
+				Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException ex) {
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			sync(dir);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+	
+	// makes the rename durable; some platforms (Windows) can't open a directory, nothing to do there
+	private static void sync(Path dir) throws IOException {
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(dir, StandardOpenOption.READ);
+		} catch (IOException ex) {
+			return;
+		}
+		try (channel) {
+			channel.force(true);
+		}
+	}
+	
+	public static Checkpoint read(Path file) throws IOException {
+		try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			return (Checkpoint) in.readObject();
+		} catch (ClassNotFoundException | ClassCastException ex) {
+			throw new InvalidObjectException("Not a checkpoint: " + file);
+		}
+	}
+	
+}
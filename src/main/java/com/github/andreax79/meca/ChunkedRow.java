@@ -0,0 +1,345 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.random.RandomGenerator;
+
+// Persistent row for the sparse asynchronous update patterns: the cells live in the leaves
+// (32 cells) of a trie with 32 children per node, and a step copies only the paths to the
+// cells it updates, sharing everything else with the previous generation, O(k log n) for k
+// cells instead of the O(n) copy of Row. Every node keeps the number of ones below it,
+// updated on the changed cells, and the sum of omega / bigOmega, recomputed only for the
+// nodes touched since it was last read. The cells are the Cell objects of Row, with the
+// same arithmetic and activation, and the rows evolve exactly as a Row with the same random.
+public class ChunkedRow implements Lattice, ChangeTracking, Serializable {
+
+	private static final long serialVersionUID = 2L;
+	
+	private static final int LEAF_BITS = 5;
+	private static final int NODE_BITS = 5;
+	private static final int NODE_MASK = (1 << NODE_BITS) - 1;
+	private static final int LEAF_MASK = (1 << LEAF_BITS) - 1;
+	
+	private int size;
+	private int height;
+	private transient Node root;
+	private int t;
+	private Rule rule;
+	private double alpha;
+	private Boundaries boundaries;
+	private UpdatePattern updatePattern;
+	private Cell fixed;
+	private Scheduler scheduler;
+	private transient Cell scratch[];
+	private RandomGenerator random;
+	private transient ChangeSet changes;
+	// the nodes created by the step in progress carry it and are changed in place
+	private transient Object edit;
+	
+	private static class Node implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		// Cell in the leaves, Node above; null past the end of the row
+		final Object slots[];
+		int ones;
+		double value = Double.NaN;
+		transient Object edit;
+		
+		Node(int slots, Object edit) {
+			this.slots = new Object[slots];
+			this.edit = edit;
+		}
+		
+		Node(Node node, Object edit) {
+			this.slots = node.slots.clone();
+			this.ones = node.ones;
+			this.value = node.value;
+			this.edit = edit;
+		}
+		
+	}
+	
+	public ChunkedRow(int size, Rule rule, Boundaries boundaries, UpdatePattern updatePattern, String patternString, double alpha, RandomGenerator random) {
+		this(new Row(size, rule, boundaries, updatePattern, patternString, alpha, random));
+	}
+	
+	// takes over the cells, the scheduler and the random of the row
+	public ChunkedRow(Row row) {
+		this.size = row.getSize();
+		this.t = row.getT();
+		this.rule = row.getRule();
+		this.alpha = row.getAlpha();
+		this.boundaries = row.getBoundaries();
+		this.updatePattern = row.getUpdatePattern();
+		this.random = row.getRandom();
+		this.scheduler = row.getScheduler();
+		if (boundaries == Boundaries.fixed) {
+			fixed = new Cell(rule);
+			fixed.setState(false);
+		}
+		if (scheduler != null)
+			scratch = new Cell[scheduler.getScratchSize()];
+		height = 0;
+		while ((long) 1 << (LEAF_BITS + NODE_BITS * height) < size)
+			height++;
+		Object edit = new Object();
+		root = build(height, 0, row, edit);
+	}
+	
+	private ChunkedRow(ChunkedRow row) {
+		this.size = row.size;
+		this.height = row.height;
+		this.root = row.root;
+		this.t = row.t + 1;
+		this.rule = row.rule;
+		this.alpha = row.alpha;
+		this.boundaries = row.boundaries;
+		this.updatePattern = row.updatePattern;
+		this.fixed = row.fixed;
+		this.scheduler = row.scheduler;
+		this.scratch = row.scratch;
+		this.random = row.random;
+		this.changes = row.changes;
+		if (changes != null)
+			changes.clear();
+		edit = new Object();
+		if (updatePattern == UpdatePattern.synchronous) {
+			// everything changes: a new trie
+			root = build(height, 0, row, edit);
+		} else {
+			scheduler.step(new CellUpdater());
+		}
+		edit = null;
+	}
+	
+	// the subtree of the given height holding the cells from first, the next generation of the row
+	// (or the cells of a Row, or an array of cells)
+	private Node build(int level, int first, Object source, Object edit) {
+		if (level == 0) {
+			Node leaf = new Node(1 << LEAF_BITS, edit);
+			int end = Math.min(size, first + (1 << LEAF_BITS));
+			for (int i = first; i < end; i++) {
+				Cell cell;
+				if (source instanceof Row) {
+					cell = ((Row) source).getCell(i);
+				} else if (source instanceof Cell[]) {
+					cell = ((Cell[]) source)[i];
+				} else {
+					ChunkedRow row = (ChunkedRow) source;
+					cell = new Cell(row.getCell(i), row.getCell((t % 2 == 0) ? (i+1) : (i-1)));
+					if (changes != null)
+						record(i, row.getCell(i), cell);
+				}
+				leaf.slots[i - first] = cell;
+				if (cell.getState())
+					leaf.ones++;
+			}
+			return leaf;
+		}
+		Node node = new Node(1 << NODE_BITS, edit);
+		int shift = LEAF_BITS + NODE_BITS * (level - 1);
+		for (int j = 0; j <= NODE_MASK; j++) {
+			int from = first + (j << shift);
+			if (from >= size || from < first)
+				break;
+			Node child = build(level - 1, from, source, edit);
+			node.slots[j] = child;
+			node.ones += child.ones;
+		}
+		return node;
+	}
+	
+	// the cells, not the trie: a restored row shares nothing with the older generations
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		Cell.writeCells(out, size, this::getCell);
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		root = build(height, 0, Cell.readCells(in), new Object());
+		if (scheduler != null)
+			scratch = new Cell[scheduler.getScratchSize()];
+	}
+	
+	public void setChanges(ChangeSet changes) {
+		if (changes != null && changes.getSize() != size)
+			throw new IllegalArgumentException("Change set size is not " + size);
+		this.changes = changes;
+	}
+	
+	private void record(int i, Cell old, Cell cell) {
+		if (cell.getState() != old.getState()) {
+			changes.flip(i);
+			changes.addOnes(cell.getState() ? 1 : -1);
+		}
+		changes.addValue((cell.getOmega() - old.getOmega()) / old.getBigOmega());
+	}
+	
+	public ChunkedRow next() {
+		return new ChunkedRow(this);
+	}
+	
+	private class CellUpdater implements Scheduler.Updater {
+		
+		public void update(int i) {
+			set(i, new Cell(getCell(i), getCell((t % 2 == 0) ? (i+1) : (i-1))));
+		}
+		
+		public void compute(int i, int k) {
+			scratch[k] = new Cell(getCell(i), getCell((t % 2 == 0) ? (i+1) : (i-1)));
+		}
+		
+		public void commit(int i, int k) {
+			set(i, scratch[k]);
+		}
+		
+	}
+	
+	// copies the nodes on the path to cell i that are still shared, fixing their counts on the way, then stores the cell
+	private void set(int i, Cell cell) {
+		Cell old = getCell(i);
+		if (changes != null)
+			record(i, old, cell);
+		int delta = (cell.getState() ? 1 : 0) - (old.getState() ? 1 : 0);
+		if (root.edit != edit)
+			root = new Node(root, edit);
+		Node node = root;
+		for (int level = height; level > 0; level--) {
+			node.ones += delta;
+			node.value = Double.NaN;
+			int j = (i >>> (LEAF_BITS + NODE_BITS * (level - 1))) & NODE_MASK;
+			Node child = (Node) node.slots[j];
+			if (child.edit != edit) {
+				child = new Node(child, edit);
+				node.slots[j] = child;
+			}
+			node = child;
+		}
+		node.ones += delta;
+		node.value = Double.NaN;
+		node.slots[i & LEAF_MASK] = cell;
+	}
+	
+	public Cell getCell(int i) {
+		switch (boundaries) {
+		case periodic:
+			i = (i + size) % size;
+			break;
+		case adiabatic:
+			if (i < 0) i = 0;
+			if (i >= size) i = size - 1;
+			break;
+		case reflective:
+			if (i < 0) i = -i;
+			if (i >= size) i = size - i + (size - 2);
+			if (size == 1) i = 0; // a single cell is its own mirror
+			break;
+		case fixed:
+			if ((i < 0) || (i >= size)) return fixed;
+			break;
+		default:
+			throw new RuntimeException("Invalid boundaries");
+		}
+		Node node = root;
+		for (int level = height; level > 0; level--)
+			node = (Node) node.slots[(i >>> (LEAF_BITS + NODE_BITS * (level - 1))) & NODE_MASK];
+		return (Cell) node.slots[i & LEAF_MASK];
+	}
+	
+	private static double value(Node node, int level) {
+		if (!Double.isNaN(node.value))
+			return node.value;
+		double value = 0;
+		for (Object slot : node.slots) {
+			if (slot == null)
+				break;
+			if (level == 0) {
+				Cell cell = (Cell) slot;
+				value += cell.getOmega() / cell.getBigOmega();
+			} else {
+				value += value((Node) slot, level - 1);
+			}
+		}
+		// nodes shared with other generations hold the same cells: caching the sum is safe
+		node.value = value;
+		return value;
+	}
+	
+	public int getT() {
+		return t;
+	}
+
+	public int getSize() {
+		return size;
+	}
+	
+	public Rule getRule() {
+		return rule;
+	}
+	
+	public double getAlpha() {
+		return alpha;
+	}
+	
+	public RandomGenerator getRandom() {
+		return random;
+	}
+	
+	public Boundaries getBoundaries() {
+		return boundaries;
+	}
+	
+	public UpdatePattern getUpdatePattern() {
+		return updatePattern;
+	}
+	
+	public int getOnes() {
+		return root.ones;
+	}
+	
+	public double getDensity() {
+		return getOnes() * 1d / getSize();
+	}
+	
+	public double getValue() {
+		return value(root, height);
+	}
+	
+	public boolean getValue(int i) {
+		return getCell(i).getState();
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(size);
+		for (int i = 0; i < size; i++)
+			sb.append(getCell(i).toString());
+		return sb.toString();
+	}
+	
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.io.Serializable;
+
+// Parameters of a single run
+public class Configuration implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	
+	private int ruleNumber;
+	private int width;
+	private Boundaries boundaries;
+	private UpdatePattern updatePattern;
+	private int steps;
+	private double alpha;
+	private String pattern;
+	private long seed;
+	
+	public Configuration(int ruleNumber, int width, Boundaries boundaries, UpdatePattern updatePattern, int steps, double alpha, String pattern) {
+		this(ruleNumber, width, boundaries, updatePattern, steps, alpha, pattern, RandomSource.newSeed());
+	}
+	
+	public Configuration(int ruleNumber, int width, Boundaries boundaries, UpdatePattern updatePattern, int steps, double alpha, String pattern, long seed) {
+		if (ruleNumber < 0 || ruleNumber > 15)
+			throw new IllegalArgumentException("Invalid rule number");
+		this.ruleNumber = ruleNumber;
+		this.width = width;
+		this.boundaries = boundaries;
+		this.updatePattern = updatePattern;
+		this.steps = steps;
+		this.alpha = alpha;
+		this.pattern = pattern;
+		this.seed = seed;
+	}
+	
+	public int getRuleNumber() {
+		return ruleNumber;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public Boundaries getBoundaries() {
+		return boundaries;
+	}
+
+	public UpdatePattern getUpdatePattern() {
+		return updatePattern;
+	}
+
+	public int getSteps() {
+		return steps;
+	}
+
+	public double getAlpha() {
+		return alpha;
+	}
+
+	public String getPattern() {
+		return pattern;
+	}
+
+	// seed of the run's RandomSource, the same seed replays the same run
+	// false when nothing is drawn from the seed: a pattern sets every cell and the update is synchronous
+	public boolean isRandom() {
+		return pattern == null || pattern.isEmpty() || updatePattern != UpdatePattern.synchronous;
+	}
+	
+	public long getSeed() {
+		return seed;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ruleNumber;
+		result = prime * result + width;
+		result = prime * result + boundaries.hashCode();
+		result = prime * result + updatePattern.hashCode();
+		result = prime * result + steps;
+		long bits = Double.doubleToLongBits(alpha);
+		result = prime * result + (int) (bits ^ (bits >>> 32));
+		result = prime * result + ((pattern == null) ? 0 : pattern.hashCode());
+		result = prime * result + (int) (seed ^ (seed >>> 32));
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		Configuration other = (Configuration) obj;
+		if (ruleNumber != other.ruleNumber || width != other.width || steps != other.steps || seed != other.seed)
+			return false;
+		if (boundaries != other.boundaries || updatePattern != other.updatePattern)
+			return false;
+		if (Double.doubleToLongBits(alpha) != Double.doubleToLongBits(other.alpha))
+			return false;
+		if (pattern == null ? other.pattern != null : !pattern.equals(other.pattern))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "Rule: " + ruleNumber + " Boundaties: " + boundaries + " UpdatePattern: " + updatePattern + " Alpha: " + String.format("%.3f",alpha);
+	}
+	
+}
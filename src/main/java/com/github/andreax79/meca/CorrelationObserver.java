@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+// Two-point correlation C(r) = <s(i) s(i+r)> - <s>^2 for the distances 1 to maxDistance, over
+// the pairs of cells inside the row. Only the pairs of a flipped cell change, O(changes * maxDistance);
+// when more than one cell in 64 changed the pairs are counted again, a word at a time
+public class CorrelationObserver implements Observer {
+
+	public static final int DEFAULT_MAX_DISTANCE = 8;
+
+	private int maxDistance;
+	private int size;
+	private long cells[];
+	private int ones;
+	private long pairs[];
+	private Stats stats[];
+
+	public CorrelationObserver() {
+		this(DEFAULT_MAX_DISTANCE);
+	}
+
+	public CorrelationObserver(int maxDistance) {
+		if (maxDistance < 1)
+			throw new IllegalArgumentException("Invalid distance");
+		this.maxDistance = maxDistance;
+	}
+
+	public void start(Lattice lattice) {
+		size = lattice.getSize();
+		cells = new long[(size + 63) >> 6];
+		for (int i = 0; i < size; i++)
+			if (lattice.getValue(i))
+				cells[i >>> 6] |= 1L << i;
+		pairs = new long[maxDistance + 1];
+		stats = new Stats[maxDistance + 1];
+		for (int r = 1; r <= maxDistance; r++)
+			stats[r] = new Stats();
+		count();
+	}
+
+	// the cells past the end of the row are 0, they pair with nothing
+	private void count() {
+		ones = 0;
+		for (int w = 0; w < cells.length; w++)
+			ones += Long.bitCount(cells[w]);
+		for (int r = 1; r <= maxDistance; r++) {
+			long n = 0;
+			if (r < 64) {
+				for (int w = 0; w < cells.length; w++) {
+					long shifted = cells[w] >>> r;
+					if (w + 1 < cells.length)
+						shifted |= cells[w + 1] << (64 - r);
+					n += Long.bitCount(cells[w] & shifted);
+				}
+			} else {
+				for (int i = 0; i + r < size; i++)
+					if (get(i) && get(i + r))
+						n++;
+			}
+			pairs[r] = n;
+		}
+	}
+
+	public void step(Lattice lattice, ChangeSet changes) {
+		if ((long) changes.getCount() * 64 > size) {
+			for (int w = 0; w < cells.length; w++)
+				cells[w] ^= changes.getWord(w);
+			count();
+		} else {
+			for (int i = changes.nextChanged(0); i >= 0; i = changes.nextChanged(i + 1))
+				flip(i);
+		}
+		for (int r = 1; r <= maxDistance; r++)
+			stats[r].add(getCorrelation(r));
+	}
+
+	private void flip(int i) {
+		int sign = get(i) ? -1 : 1;
+		for (int r = 1; r <= maxDistance; r++) {
+			int n = 0;
+			if (i - r >= 0 && get(i - r))
+				n++;
+			if (i + r < size && get(i + r))
+				n++;
+			pairs[r] += sign * n;
+		}
+		ones += sign;
+		cells[i >>> 6] ^= 1L << i;
+	}
+
+	private boolean get(int i) {
+		return (cells[i >>> 6] & (1L << i)) != 0;
+	}
+
+	public int getMaxDistance() {
+		return maxDistance;
+	}
+
+	public double getCorrelation(int r) {
+		if (r >= size)
+			return Double.NaN;
+		double density = ones * 1d / size;
+		return pairs[r] * 1d / (size - r) - density * density;
+	}
+
+	// the correlations at distance r after every step
+	public Stats getStats(int r) {
+		return stats[r];
+	}
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+// Brent's cycle detection over the states of a deterministic run, in constant memory:
+// a single saved row (the tortoise). Two states are the same when the cells and the parity
+// of t are the same, as the neighbor side depends on it. The rows are compared directly,
+// word by word up to the first difference: at most one pass over the row per step (all of
+// it only for an equal row or a difference at the end), no hash to keep up to date.
+public class CycleDetector {
+
+	private BitRow tortoise;
+	private SlicedRow slicedTortoise;
+	private long power = 1;
+	private long lambda;
+	private long period;
+	
+	// offer the successive states of a run, returns true once the current state closes a cycle
+	public boolean offer(BitRow row) {
+		if (period != 0)
+			return true;
+		if (tortoise == null) {
+			tortoise = new BitRow(row);
+			return false;
+		}
+		lambda++;
+		if ((row.getT() - tortoise.getT()) % 2 == 0 && row.equals(tortoise)) {
+			period = lambda;
+			return true;
+		}
+		if (power == lambda) {
+			tortoise.set(row);
+			power *= 2;
+			lambda = 0;
+		}
+		return false;
+	}
+	
+	// the same for the joint state of bit-sliced replicas, whose period is the lcm of theirs
+	public boolean offer(SlicedRow row) {
+		if (period != 0)
+			return true;
+		if (slicedTortoise == null) {
+			slicedTortoise = new SlicedRow(row);
+			return false;
+		}
+		lambda++;
+		if ((row.getT() - slicedTortoise.getT()) % 2 == 0 && row.equals(slicedTortoise)) {
+			period = lambda;
+			return true;
+		}
+		if (power == lambda) {
+			slicedTortoise.set(row);
+			power *= 2;
+			lambda = 0;
+		}
+		return false;
+	}
+	
+	// period of the cycle, 0 until it has been detected
+	public long getPeriod() {
+		return period;
+	}
+	
+	// Brent's second phase: steps needed from the initial state to enter the cycle
+	public static long findTransient(BitRow initial, long period) {
+		BitRow tortoise = new BitRow(initial);
+		BitRow hare = new BitRow(initial);
+		for (long i = 0; i < period; i++)
+			hare.step();
+		long mu = 0;
+		while (!tortoise.equals(hare)) {
+			tortoise.step();
+			hare.step();
+			mu++;
+		}
+		return mu;
+	}
+	
+}
@@ -0,0 +1,521 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.util.random.RandomGenerator;
+
+// Damage spreading: a row and a copy of it with one cell flipped, stepped in lockstep in one
+// pass. The asynchronous update patterns visit the same cells in the same order in both copies
+// (one scheduler, one random stream). The row is packed 64 cells per word and the copy is kept
+// as the damage, the XOR of the two rows, so the Hamming distance is a popcount. With the
+// synchronous update the copy is stepped only around the cells where it differs from the row:
+// the words around the damage without memory, the cells where the states or the omegas differ
+// with memory (the row is then an ArrayRow, stepped by its kernel).
+public class DamageRow {
+
+	private int size;
+	private int flipped;
+	private int t;
+	private int t0;
+	private Rule rule;
+	private Boundaries boundaries;
+	private UpdatePattern updatePattern;
+	private double alpha;
+	private double bigOmega;
+	private int leftEdge;
+	private int rightEdge;
+	private long lastMask;
+	private long cells[];
+	private long nextCells[];
+	private long damage[];
+	private long nextDamage[];
+	// damaged words: damage is 0 outside [lo, hi], empty when lo > hi
+	private int lo;
+	private int hi;
+	private int nextLo;
+	private int nextHi;
+	private int distance;
+	// omega of the row and of the copy, asynchronous update with memory only
+	private double omega[];
+	private double omegaCopy[];
+	// synchronous update with memory: the row, the copy (with ghost cells as in ArrayRow, valid
+	// from dirtyLo - 1 to dirtyHi + 1) and the cells where they differ, in state or in omega
+	private ArrayRow row;
+	private boolean copyState[];
+	private boolean nextCopyState[];
+	private double copyOmega[];
+	private double nextCopyOmega[];
+	private int dirtyLo;
+	private int dirtyHi;
+	private boolean full;
+	private OmegaKernel kernel;
+	private Scheduler scheduler;
+	private Scheduler.Updater updater;
+	private RandomGenerator random;
+	private int d;
+	// next states and omegas of the last cell computed
+	private boolean state;
+	private boolean stateCopy;
+	private double o;
+	private double oCopy;
+	// scratch slots of the equally clocked patterns
+	private boolean scratch[];
+	private boolean scratchCopy[];
+	private double scratchOmega[];
+	private double scratchOmegaCopy[];
+	
+	public DamageRow(Configuration configuration, int flipped) {
+		this(new ArrayRow(configuration.getWidth(), new Rule(configuration.getRuleNumber()), configuration.getBoundaries(), configuration.getUpdatePattern(),
+				configuration.getPattern(), configuration.getAlpha(), new RandomSource(configuration.getSeed())), flipped);
+	}
+	
+	// takes over the cells, the scheduler and the random source of the row: the first copy
+	// goes on exactly as the row would, the second starts with the cell flipped
+	public DamageRow(ArrayRow row, int flipped) {
+		if (flipped < 0 || flipped >= row.getSize())
+			throw new IndexOutOfBoundsException("Invalid cell " + flipped);
+		this.size = row.getSize();
+		this.flipped = flipped;
+		this.t = row.getT();
+		this.t0 = t;
+		this.rule = row.getRule();
+		this.boundaries = row.getBoundaries();
+		this.updatePattern = row.getUpdatePattern();
+		this.alpha = row.getAlpha();
+		this.bigOmega = row.getBigOmega();
+		this.scheduler = row.getScheduler();
+		this.random = row.getRandom();
+		leftEdge = BitRow.leftEdgeIndex(size, boundaries);
+		rightEdge = BitRow.rightEdgeIndex(size, boundaries);
+		lastMask = (size & 63) == 0 ? -1L : (1L << size) - 1;
+		int words = (size + 63) >> 6;
+		cells = new long[words];
+		nextCells = new long[words];
+		damage = new long[words];
+		nextDamage = new long[words];
+		damage[flipped >> 6] = 1L << flipped;
+		// the flipped cell as ArrayRow.setValue
+		boolean value = !row.getValue(flipped);
+		if (alpha != 0 && updatePattern == UpdatePattern.synchronous) {
+			this.row = row;
+			kernel = OmegaKernel.getInstance();
+			copyState = new boolean[size + 2];
+			nextCopyState = new boolean[size + 2];
+			copyOmega = new double[size + 2];
+			nextCopyOmega = new double[size + 2];
+			copyState[flipped + 1] = value;
+			copyOmega[flipped + 1] = value ? bigOmega : 0;
+			dirtyLo = dirtyHi = flipped;
+		} else {
+			for (int i = 0; i < size; i++)
+				if (row.getValue(i))
+					cells[i >> 6] |= 1L << i;
+			if (alpha != 0) {
+				omega = new double[size];
+				for (int i = 0; i < size; i++)
+					omega[i] = row.getOmega(i);
+				omegaCopy = omega.clone();
+				omegaCopy[flipped] = value ? bigOmega : 0;
+			}
+		}
+		distance = 1;
+		lo = hi = flipped >> 6;
+		nextLo = words;
+		nextHi = -1;
+		if (scheduler != null) {
+			updater = new PairUpdater();
+			int slots = scheduler.getScratchSize();
+			scratch = new boolean[slots];
+			scratchCopy = new boolean[slots];
+			if (alpha != 0) {
+				scratchOmega = new double[slots];
+				scratchOmegaCopy = new double[slots];
+			}
+		}
+	}
+	
+	public DamageRow next() {
+		step();
+		return this;
+	}
+	
+	public void step() {
+		if (updatePattern != UpdatePattern.synchronous) {
+			t++;
+			d = (t % 2 == 0) ? 1 : -1;
+			scheduler.step(updater);
+			trim();
+		} else if (row == null) {
+			stepWords();
+		} else {
+			stepMemory();
+		}
+	}
+	
+	public void advance(int generations) {
+		for (int g = 0; g < generations; g++)
+			step();
+	}
+	
+	// steps and collects the damage (Hamming distance / size) after every step
+	public Stats run(int steps) {
+		Stats stats = new Stats();
+		for (int s = 0; s < steps; s++) {
+			step();
+			stats.add(getDamage());
+		}
+		return stats;
+	}
+	
+	private void stepWords() {
+		// the row everywhere, the copy only one word around the damage (the damage moves one cell per step)
+		// or everywhere when it reaches the boundaries
+		int last = cells.length - 1;
+		boolean right = (t + 1) % 2 == 0;
+		stepWords(cells, null, nextCells, 0, cells.length, right);
+		for (int w = nextLo; w <= nextHi; w++)
+			nextDamage[w] = 0;
+		int from = lo - 1;
+		int to = hi + 1;
+		if (lo > hi) {
+			// healed: without memory the copies stay equal
+			from = 0;
+			to = -1;
+		} else if (from <= 0 || to >= last) {
+			from = 0;
+			to = last;
+		}
+		stepWords(cells, damage, nextDamage, from, to + 1, right);
+		int newLo = cells.length;
+		int newHi = -1;
+		distance = 0;
+		for (int w = from; w <= to; w++) {
+			long x = nextDamage[w] ^ nextCells[w];
+			nextDamage[w] = x;
+			if (x != 0) {
+				distance += Long.bitCount(x);
+				newLo = Math.min(newLo, w);
+				newHi = w;
+			}
+		}
+		swap();
+		// the damage of the previous generation, cleared on the next step
+		nextLo = lo;
+		nextHi = hi;
+		lo = newLo;
+		hi = newHi;
+		t++;
+	}
+	
+	// words [from, to) of the next generation of a ^ x (of a when x is null), as BitRow.stepChunk
+	private void stepWords(long a[], long x[], long next[], int from, int to, boolean right) {
+		if (from >= to)
+			return;
+		int last = a.length - 1;
+		if (right) {
+			int end = Math.min(to, last);
+			for (int w = from; w < end; w++) {
+				long self = x == null ? a[w] : a[w] ^ x[w];
+				long following = x == null ? a[w + 1] : a[w + 1] ^ x[w + 1];
+				next[w] = rule.compute(self, (self >>> 1) | (following << 63));
+			}
+			if (to > last) {
+				long self = x == null ? a[last] : a[last] ^ x[last];
+				long edge = rightEdge < 0 ? 0 : get(a, x, rightEdge);
+				next[last] = rule.compute(self, (self >>> 1) | (edge << (size - 1))) & lastMask;
+			}
+		} else {
+			long carry = from == 0 ? (leftEdge < 0 ? 0 : get(a, x, leftEdge)) : (x == null ? a[from - 1] : a[from - 1] ^ x[from - 1]) >>> 63;
+			for (int w = from; w < to; w++) {
+				long self = x == null ? a[w] : a[w] ^ x[w];
+				next[w] = rule.compute(self, (self << 1) | carry);
+				carry = self >>> 63;
+			}
+			if (to > last)
+				next[last] &= lastMask;
+		}
+	}
+	
+	private void stepMemory() {
+		// the copy is stepped on the dirty cells and one cell around them, or everywhere once they reach the boundaries
+		int from = dirtyLo - 1;
+		int to = dirtyHi + 1;
+		if (dirtyLo > dirtyHi) {
+			// the same states and omegas: the copies stay equal
+			from = 0;
+			to = -1;
+		} else if (full || from <= 0 || to >= size - 1) {
+			from = 0;
+			to = size - 1;
+		}
+		if (from <= to) {
+			// the cells joining the copy and their neighbors are taken from the row
+			int first = Math.max(0, from - 1);
+			int last = Math.min(size - 1, to + 1);
+			if (!full && from == 0) {
+				full = true;
+				first = 0;
+				last = size - 1;
+			} else if (full) {
+				first = 0;
+				last = -1;
+			}
+			for (int i = first; i <= last; i++) {
+				if (i < dirtyLo || i > dirtyHi) {
+					copyState[i + 1] = row.getValue(i);
+					copyOmega[i + 1] = row.getOmega(i);
+				}
+			}
+			if (full) {
+				copyState[0] = leftEdge >= 0 && copyState[leftEdge + 1];
+				copyState[size + 1] = rightEdge >= 0 && copyState[rightEdge + 1];
+			}
+			int d = ((t + 1) % 2 == 0) ? 1 : -1;
+			kernel.update(rule, alpha, bigOmega, copyState, copyOmega, d, nextCopyState, nextCopyOmega, from + 1, to + 2);
+		}
+		row.step();
+		boolean tmpState[] = copyState;
+		copyState = nextCopyState;
+		nextCopyState = tmpState;
+		double tmpOmega[] = copyOmega;
+		copyOmega = nextCopyOmega;
+		nextCopyOmega = tmpOmega;
+		for (int w = lo; w <= hi; w++)
+			damage[w] = 0;
+		int newLo = damage.length;
+		int newHi = -1;
+		distance = 0;
+		dirtyLo = size;
+		dirtyHi = -1;
+		for (int i = from; i <= to; i++) {
+			boolean damaged = copyState[i + 1] != row.getValue(i);
+			if (damaged) {
+				damage[i >> 6] |= 1L << i;
+				distance++;
+				newLo = Math.min(newLo, i >> 6);
+				newHi = i >> 6;
+			}
+			if (damaged || copyOmega[i + 1] != row.getOmega(i)) {
+				dirtyLo = Math.min(dirtyLo, i);
+				dirtyHi = i;
+			}
+		}
+		lo = newLo;
+		hi = newHi;
+		t++;
+	}
+	
+	private void swap() {
+		long tmp[] = cells;
+		cells = nextCells;
+		nextCells = tmp;
+		tmp = damage;
+		damage = nextDamage;
+		nextDamage = tmp;
+	}
+	
+	// next state (and omega) of cell i in both copies, the same arithmetic as ArrayRow.update
+	private void compute(int i) {
+		int j = i + d;
+		if (j < 0)
+			j = leftEdge;
+		else if (j >= size)
+			j = rightEdge;
+		boolean a = get(cells, i);
+		boolean b = a ^ get(damage, i);
+		boolean neighbor = j >= 0 && get(cells, j);
+		boolean neighborCopy = j >= 0 && (neighbor ^ get(damage, j));
+		state = rule.compute(a, neighbor);
+		stateCopy = rule.compute(b, neighborCopy);
+		if (omega != null) {
+			o = (omega[i] * alpha) + (state ? 1 : 0);
+			if (o != 0.5)
+				state = (o / bigOmega) > 0.5;
+			oCopy = (omegaCopy[i] * alpha) + (stateCopy ? 1 : 0);
+			if (oCopy != 0.5)
+				stateCopy = (oCopy / bigOmega) > 0.5;
+		}
+	}
+	
+	private void store(int i, boolean a, boolean b) {
+		long bit = 1L << i;
+		int w = i >> 6;
+		cells[w] = a ? cells[w] | bit : cells[w] & ~bit;
+		boolean damaged = a != b;
+		if (damaged != ((damage[w] & bit) != 0)) {
+			damage[w] ^= bit;
+			if (damaged) {
+				distance++;
+				lo = Math.min(lo, w);
+				hi = Math.max(hi, w);
+			} else {
+				distance--;
+			}
+		}
+	}
+	
+	private void trim() {
+		while (lo <= hi && damage[lo] == 0)
+			lo++;
+		while (hi >= lo && damage[hi] == 0)
+			hi--;
+		if (lo > hi) {
+			lo = cells.length;
+			hi = -1;
+		}
+	}
+	
+	private class PairUpdater implements Scheduler.Updater {
+		
+		public void update(int i) {
+			DamageRow.this.compute(i);
+			if (omega != null) {
+				omega[i] = o;
+				omegaCopy[i] = oCopy;
+			}
+			store(i, state, stateCopy);
+		}
+		
+		public void compute(int i, int k) {
+			DamageRow.this.compute(i);
+			scratch[k] = state;
+			scratchCopy[k] = stateCopy;
+			if (omega != null) {
+				scratchOmega[k] = o;
+				scratchOmegaCopy[k] = oCopy;
+			}
+		}
+		
+		public void commit(int i, int k) {
+			if (omega != null) {
+				omega[i] = scratchOmega[k];
+				omegaCopy[i] = scratchOmegaCopy[k];
+			}
+			store(i, scratch[k], scratchCopy[k]);
+		}
+		
+	}
+	
+	private static boolean get(long words[], int i) {
+		return ((words[i >> 6] >>> i) & 1L) != 0;
+	}
+	
+	private static long get(long a[], long x[], int i) {
+		long word = x == null ? a[i >> 6] : a[i >> 6] ^ x[i >> 6];
+		return (word >>> i) & 1L;
+	}
+	
+	// cells where the copies differ
+	public int getDistance() {
+		return distance;
+	}
+	
+	public double getDamage() {
+		return (double) distance / size;
+	}
+	
+	// length of the smallest interval (arc with periodic boundaries) holding every damaged cell, 0 once healed
+	public int getSpread() {
+		if (lo > hi)
+			return 0;
+		int first = (lo << 6) + Long.numberOfTrailingZeros(damage[lo]);
+		int last = (hi << 6) + 63 - Long.numberOfLeadingZeros(damage[hi]);
+		if (boundaries != Boundaries.periodic)
+			return last - first + 1;
+		// the complement of the largest undamaged gap, which may wrap around
+		int gap = first + size - 1 - last;
+		int previous = first;
+		for (int w = lo; w <= hi; w++) {
+			for (long x = damage[w]; x != 0; x &= x - 1) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(x);
+				gap = Math.max(gap, i - previous - 1);
+				previous = i;
+			}
+		}
+		return size - gap;
+	}
+	
+	// mean growth of the spread per step since the start (both fronts together, at most 1 with
+	// the synchronous update), 0 once healed
+	public double getVelocity() {
+		int spread = getSpread();
+		if (spread == 0 || t == t0)
+			return 0;
+		return (double) (spread - 1) / (t - t0);
+	}
+	
+	public boolean isDamaged(int i) {
+		return get(damage, i);
+	}
+	
+	// cell i of the first copy
+	public boolean getValue(int i) {
+		return row != null ? row.getValue(i) : get(cells, i);
+	}
+	
+	// cell i of the copy with the flipped cell
+	public boolean getCopyValue(int i) {
+		return getValue(i) ^ get(damage, i);
+	}
+	
+	public int getFlipped() {
+		return flipped;
+	}
+	
+	public int getT() {
+		return t;
+	}
+	
+	public int getSize() {
+		return size;
+	}
+	
+	public Rule getRule() {
+		return rule;
+	}
+	
+	public Boundaries getBoundaries() {
+		return boundaries;
+	}
+	
+	public UpdatePattern getUpdatePattern() {
+		return updatePattern;
+	}
+	
+	public double getAlpha() {
+		return alpha;
+	}
+	
+	public RandomGenerator getRandom() {
+		return random;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(size);
+		for (int i = 0; i < size; i++)
+			sb.append(getValue(i) ? '1' : '0');
+		return sb.toString();
+	}
+	
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+// Number of ones and density, from the changes of the number of ones reported by the engine
+public class DensityObserver implements Observer {
+
+	private int size;
+	private int ones;
+	private Stats stats = new Stats();
+
+	public void start(Lattice lattice) {
+		size = lattice.getSize();
+		ones = lattice.getOnes();
+	}
+
+	public void step(Lattice lattice, ChangeSet changes) {
+		ones += changes.getOnesDelta();
+		stats.add(getDensity());
+	}
+
+	public int getOnes() {
+		return ones;
+	}
+
+	public double getDensity() {
+		return ones * 1d / size;
+	}
+
+	// the densities after every step
+	public Stats getStats() {
+		return stats;
+	}
+
+}
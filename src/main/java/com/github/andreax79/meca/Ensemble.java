@@ -0,0 +1,313 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Independent replicas of one configuration, each on its own split of the configuration's
+// random stream, added in rounds until the confidence interval of the mean density is narrow
+// enough or the replica budget is spent. The replica means are independent, so the interval
+// comes from their spread (Student's t) and not from the correlated steps of a single run.
+// Synchronous runs without memory are bit-sliced, 64 replicas per pass (see SlicedRow).
+public class Ensemble {
+
+	// largest sliced round (unless minReplicas is larger), so the stop is checked a few times within the budget
+	static final int MAX_SLICED_ROUND = 4 * SlicedRow.REPLICAS;
+	
+	private Configuration configuration;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private double targetWidth = 0.01;
+	private double confidence = 0.95;
+	private int minReplicas = 4;
+	private int maxReplicas = 1000;
+	private Stats stats;
+	private Stats replicaMeans;
+	// replicas stepped together by a task in sliced mode
+	private int slice = SlicedRow.REPLICAS;
+	
+	public Ensemble(Configuration configuration) {
+		this.configuration = configuration;
+	}
+	
+	public Configuration getConfiguration() {
+		return configuration;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Invalid parallelism");
+		this.parallelism = parallelism;
+	}
+
+	public double getTargetWidth() {
+		return targetWidth;
+	}
+
+	// full width of the confidence interval to reach, 0 to always spend the whole budget
+	public void setTargetWidth(double targetWidth) {
+		if (targetWidth < 0)
+			throw new IllegalArgumentException("Invalid interval width");
+		this.targetWidth = targetWidth;
+	}
+
+	public double getConfidence() {
+		return confidence;
+	}
+
+	public void setConfidence(double confidence) {
+		if (confidence <= 0 || confidence >= 1)
+			throw new IllegalArgumentException("Invalid confidence");
+		this.confidence = confidence;
+	}
+
+	public int getMinReplicas() {
+		return minReplicas;
+	}
+
+	public int getMaxReplicas() {
+		return maxReplicas;
+	}
+
+	// replicas of the first round and replica budget
+	public void setReplicas(int minReplicas, int maxReplicas) {
+		if (minReplicas < 2 || maxReplicas < minReplicas)
+			throw new IllegalArgumentException("Invalid number of replicas");
+		this.minReplicas = minReplicas;
+		this.maxReplicas = maxReplicas;
+	}
+
+	public Stats run() throws IOException {
+		// the streams are split in replica order and the rounds don't depend on the parallelism
+		// (the workers share each round): the same seed gives the same result on any machine
+		RandomSource streams = new RandomSource(configuration.getSeed());
+		stats = new Stats();
+		replicaMeans = new Stats();
+		int replicas = 0;
+		int round = cap(maxReplicas, roundUp(minReplicas));
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			while (round > 0) {
+				RandomSource randoms[] = new RandomSource[round];
+				for (int r = 0; r < round; r++)
+					randoms[r] = streams.split();
+				Stats results[] = new Stats[round];
+				// whole words, unless the budget leaves less than a word per worker
+				slice = Math.max(1, Math.min(SlicedRow.REPLICAS, (round + parallelism - 1) / parallelism));
+				pool.invoke(new ReplicaTask(randoms, results, 0, round));
+				for (Stats result : results) {
+					stats.merge(result);
+					replicaMeans.add(result.getMeans());
+				}
+				replicas += round;
+				round = nextRound(replicas);
+			}
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		} finally {
+			pool.shutdown();
+		}
+		return stats;
+	}
+	
+	private int nextRound(int replicas) {
+		double halfWidth = getHalfWidth();
+		// also stops on a NaN width, i.e. runs too short to collect any density
+		if (replicas >= maxReplicas || !(halfWidth * 2 > targetWidth))
+			return 0;
+		// the half width shrinks as 1 / sqrt(replicas): aim for the target, at least minReplicas (or a word)
+		int needed = (int) Math.min(maxReplicas, Math.ceil(replicas * Math.pow(2 * halfWidth / targetWidth, 2)));
+		return cap(maxReplicas - replicas, roundUp(Math.max(needed - replicas, minReplicas)));
+	}
+	
+	private int cap(int remaining, int round) {
+		if (isSliced())
+			round = Math.min(round, Math.max(MAX_SLICED_ROUND, roundUp(minReplicas)));
+		return Math.min(remaining, round);
+	}
+	
+	private boolean isSliced() {
+		return configuration.getAlpha() == 0 && configuration.getUpdatePattern() == UpdatePattern.synchronous;
+	}
+	
+	private int roundUp(int replicas) {
+		// sliced replicas come in words: the rest of a word is free
+		if (!isSliced())
+			return replicas;
+		return (replicas + SlicedRow.REPLICAS - 1) / SlicedRow.REPLICAS * SlicedRow.REPLICAS;
+	}
+	
+	// statistics of all the steps of all the replicas
+	public Stats getStats() {
+		return stats;
+	}
+	
+	// one sample per replica, its mean density
+	public Stats getReplicaMeans() {
+		return replicaMeans;
+	}
+	
+	public int getReplicas() {
+		return replicaMeans == null ? 0 : (int) replicaMeans.getCount();
+	}
+	
+	public double getMeans() {
+		return replicaMeans.getMeans();
+	}
+	
+	// half width of the confidence interval of the mean density
+	public double getHalfWidth() {
+		long n = replicaMeans.getCount();
+		if (n < 2)
+			return Double.NaN;
+		double sampleVariance = replicaMeans.getVariance() * n / (n - 1);
+		return studentQuantile(0.5 + confidence / 2, n - 1) * Math.sqrt(sampleVariance / n);
+	}
+	
+	// Abramowitz and Stegun 26.2.23, error below 4.5e-4
+	static double normalQuantile(double p) {
+		double q = p < 0.5 ? p : 1 - p;
+		double t = Math.sqrt(-2 * Math.log(q));
+		double z = t - (2.515517 + 0.802853 * t + 0.010328 * t * t) / (1 + 1.432788 * t + 0.189269 * t * t + 0.001308 * t * t * t);
+		return p < 0.5 ? -z : z;
+	}
+	
+	// Cornish-Fisher expansion of the t quantile around the normal one (Abramowitz and Stegun 26.7.5)
+	static double studentQuantile(double p, long degrees) {
+		double z = normalQuantile(p);
+		double n = degrees;
+		double z3 = z * z * z;
+		double z5 = z3 * z * z;
+		double z7 = z5 * z * z;
+		return z + (z3 + z) / (4 * n) + (5 * z5 + 16 * z3 + 3 * z) / (96 * n * n)
+				+ (3 * z7 + 19 * z5 + 17 * z3 - 15 * z) / (384 * n * n * n);
+	}
+	
+	private class ReplicaTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		
+		private RandomSource randoms[];
+		private Stats results[];
+		private int from;
+		private int to;
+		
+		ReplicaTask(RandomSource randoms[], Stats results[], int from, int to) {
+			this.randoms = randoms;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			int batch = isSliced() ? slice : 1;
+			if (to - from > batch) {
+				int middle = from + ((to - from + batch - 1) / batch / 2) * batch;
+				invokeAll(new ReplicaTask(randoms, results, from, middle), new ReplicaTask(randoms, results, middle, to));
+				return;
+			}
+			if (batch > 1) {
+				runSliced();
+				return;
+			}
+			try {
+				Simulation simulation = new Simulation(configuration, Output.noOutput, ColorScheme.noColor);
+				simulation.setRandom(randoms[from]);
+				results[from] = simulation.run();
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+		
+		private void runSliced() {
+			// the same initial rows and densities as a Simulation of each replica
+			int size = configuration.getWidth();
+			Rule rule = new Rule(configuration.getRuleNumber());
+			Boundaries boundaries = configuration.getBoundaries();
+			int count = to - from;
+			SlicedRow row = new SlicedRow(size, rule, boundaries, count);
+			for (int k = 0; k < count; k++) {
+				row.setReplica(k, new ArrayRow(size, rule, boundaries, UpdatePattern.synchronous, configuration.getPattern(), 0, randoms[from + k]));
+				results[from + k] = new Stats();
+			}
+			int ones[] = new int[count];
+			CycleDetector detector = new CycleDetector();
+			int steps = configuration.getSteps();
+			for (int t = 0; t < steps; t++) {
+				if (detector.offer(row)) {
+					finishCycle(row, detector.getPeriod(), Math.max(t, Simulation.START_MEANS_FROM_STEP), steps);
+					return;
+				}
+				if (t >= Simulation.START_MEANS_FROM_STEP) {
+					row.getOnes(ones);
+					for (int k = 0; k < count; k++)
+						results[from + k].add((double) ones[k] / size);
+				}
+				row.step();
+			}
+		}
+		
+		// every replica repeats with the joint period: collect one period and merge it, see Simulation
+		private void finishCycle(SlicedRow row, long period, int start, int steps) {
+			long remaining = steps - start;
+			if (remaining <= 0)
+				return;
+			row.advance(start - row.getT());
+			long times = remaining / period;
+			long rest = remaining % period;
+			int count = to - from;
+			Stats cycles[] = new Stats[count];
+			Stats heads[] = new Stats[count];
+			for (int k = 0; k < count; k++) {
+				cycles[k] = new Stats();
+				heads[k] = new Stats();
+			}
+			int ones[] = new int[count];
+			for (long i = 0; i < (times > 0 ? period : rest); i++) {
+				if (i == rest)
+					for (int k = 0; k < count; k++)
+						heads[k] = new Stats(cycles[k]);
+				row.getOnes(ones);
+				for (int k = 0; k < count; k++)
+					cycles[k].add((double) ones[k] / row.getSize());
+				row.step();
+			}
+			for (int k = 0; k < count; k++) {
+				if (times == 0) {
+					results[from + k].merge(cycles[k]);
+				} else {
+					results[from + k].merge(cycles[k], times);
+					results[from + k].merge(heads[k]);
+				}
+			}
+		}
+		
+	}
+	
+}
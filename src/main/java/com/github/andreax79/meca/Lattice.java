@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+public interface Lattice {
+
+	public int getT();
+
+	public int getSize();
+
+	public Rule getRule();
+
+	public Boundaries getBoundaries();
+
+	public UpdatePattern getUpdatePattern();
+
+	public int getOnes();
+
+	public double getDensity();
+
+	public double getValue();
+
+	public boolean getValue(int i);
+
+	// advance one step; engines that update in place return themselves
+	public Lattice next();
+
+}
@@ -0,0 +1,385 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+// Memoised (Hashlife-style) synchronous engine for alpha = 0, periodic rows whose width is a
+// power of two. The row is a binary tree of hash-consed blocks with 16-cell leaves. Two steps
+// in a row (left then right neighbor, or the reverse from an odd t) form a radius-1 rule, so
+// the centre half of a block of 2^k cells is known 2^(k-2) double steps ahead: these results
+// are cached per block and a jump of N steps costs O(log N) levels of cached lookups when the
+// space-time diagram is repetitive. Both caches are bounded and least-recently-used blocks are
+// evicted; an evicted block is only rebuilt, never wrong.
+public class MacroRow implements Lattice {
+
+	public static final int DEFAULT_CACHE_SIZE = 1 << 20;
+	
+	private static final int LEAF_LEVEL = 4;
+	private static final int LEAF_SIZE = 1 << LEAF_LEVEL;
+	private static final int LEAF_MASK = (1 << LEAF_SIZE) - 1;
+	private static final int SINGLE_STEP = -1;
+	
+	private int size;
+	private int level;
+	private Node root;
+	private int t;
+	private Rule rule;
+	private LruMap<Node, Node> nodes;
+	private LruMap<Step, Node> results;
+	
+	public MacroRow(Lattice row) {
+		this(row.getSize(), row.getRule());
+		if (row.getUpdatePattern() != UpdatePattern.synchronous || row.getBoundaries() != Boundaries.periodic)
+			throw new IllegalArgumentException("MacroRow supports only synchronous rows with periodic boundaries");
+		this.t = row.getT();
+		Node blocks[] = new Node[size / LEAF_SIZE];
+		for (int b = 0; b < blocks.length; b++) {
+			int bits = 0;
+			for (int i = 0; i < LEAF_SIZE; i++)
+				if (row.getValue(b * LEAF_SIZE + i))
+					bits |= 1 << i;
+			blocks[b] = leaf(bits);
+		}
+		root = build(blocks);
+	}
+	
+	public MacroRow(int size, Rule rule, String patternString, RandomGenerator random) {
+		// same initial rows as ArrayRow
+		this(size, rule);
+		if (patternString == null || patternString.length() == 0) {
+			Node blocks[] = new Node[size / LEAF_SIZE];
+			for (int b = 0; b < blocks.length; b++) {
+				int bits = 0;
+				for (int i = 0; i < LEAF_SIZE; i++)
+					if (random.nextDouble() < 0.5)
+						bits |= 1 << i;
+				blocks[b] = leaf(bits);
+			}
+			root = build(blocks);
+		} else if (patternString.equalsIgnoreCase("S")) { // single seed
+			root = seed(level, size / 2, false);
+		} else if (patternString.equalsIgnoreCase("SI")) { // single seed inverse
+			root = seed(level, size / 2, true);
+		} else {
+			Node blocks[] = new Node[size / LEAF_SIZE];
+			for (int b = 0; b < blocks.length; b++) {
+				int bits = 0;
+				for (int i = 0; i < LEAF_SIZE; i++)
+					if (patternString.charAt((b * LEAF_SIZE + i) % patternString.length()) == '1')
+						bits |= 1 << i;
+				blocks[b] = leaf(bits);
+			}
+			root = build(blocks);
+		}
+	}
+	
+	private MacroRow(int size, Rule rule) {
+		if (size < 2 * LEAF_SIZE || Integer.bitCount(size) != 1)
+			throw new IllegalArgumentException("MacroRow needs a power of two width of at least " + (2 * LEAF_SIZE));
+		this.size = size;
+		this.level = Integer.numberOfTrailingZeros(size);
+		this.rule = rule;
+		nodes = new LruMap<Node, Node>(DEFAULT_CACHE_SIZE);
+		results = new LruMap<Step, Node>(DEFAULT_CACHE_SIZE);
+	}
+	
+	// bounds both the block and the result caches, the caches are emptied
+	public void setCacheSize(int cacheSize) {
+		if (cacheSize < 1)
+			throw new IllegalArgumentException("Invalid cache size");
+		nodes = new LruMap<Node, Node>(cacheSize);
+		results = new LruMap<Step, Node>(cacheSize);
+	}
+	
+	public int getCachedNodes() {
+		return nodes.size();
+	}
+	
+	public int getCachedResults() {
+		return results.size();
+	}
+	
+	public MacroRow next() {
+		advance(1);
+		return this;
+	}
+	
+	public void advance(int generations) {
+		if (generations < 0)
+			throw new IllegalArgumentException("Invalid number of generations");
+		if ((generations & 1) != 0) {
+			advanceRow(SINGLE_STEP, t & 1);
+			t++;
+		}
+		// the double steps keep the parity of t, the jumps can be taken in any order
+		int doubles = generations >>> 1;
+		for (int j = 0; doubles != 0; j++, doubles >>>= 1) {
+			if ((doubles & 1) != 0) {
+				advanceRow(j, t & 1);
+				t += 2 << j;
+			}
+		}
+	}
+	
+	private void advanceRow(int j, int phase) {
+		// tile the row until the block is large enough for the jump, the result is its centre half
+		int k = Math.max(level + 1, j + 2);
+		Node n = root;
+		for (int l = level; l < k; l++)
+			n = join(n, n);
+		Node r = advance(n, j, phase);
+		if (k == level + 1) {
+			root = join(r.right, r.left); // r starts at size / 2
+		} else {
+			while (r.level > level)
+				r = r.left;
+			root = r;
+		}
+	}
+	
+	private Node advance(Node n, int j, int phase) {
+		// centre half of n, one step (j = SINGLE_STEP) or 2^j double steps ahead, j <= level - 2
+		Step key = new Step(n, ((j + 1) << 1) | phase);
+		Node r = results.get(key);
+		if (r != null)
+			return r;
+		if (n.level == LEAF_LEVEL + 1) {
+			r = leaf(advanceLeaves(n, j, phase));
+		} else if (j == n.level - 2) {
+			Node a = advance(n.left, j - 1, phase);
+			Node b = advance(centre(n), j - 1, phase);
+			Node c = advance(n.right, j - 1, phase);
+			r = join(advance(join(a, b), j - 1, phase), advance(join(b, c), j - 1, phase));
+		} else {
+			Node b = centre(centre(n));
+			r = join(advance(join(centre(n.left), b), j, phase), advance(join(b, centre(n.right)), j, phase));
+		}
+		results.put(key, r);
+		return r;
+	}
+	
+	private int advanceLeaves(Node n, int j, int phase) {
+		// 32 cells stepped directly, the wrong cells coming in from the edges stay out of the centre 16
+		long cells = n.left.bits | ((long) n.right.bits << LEAF_SIZE);
+		int generations = j == SINGLE_STEP ? 1 : 2 << j;
+		boolean rightNeighbor = phase == 1;
+		for (int g = 0; g < generations; g++) {
+			long neighbor = rightNeighbor ? cells >>> 1 : cells << 1;
+			cells = rule.compute(cells, neighbor) & 0xffffffffL;
+			rightNeighbor = !rightNeighbor;
+		}
+		return (int) (cells >>> (LEAF_SIZE / 2)) & LEAF_MASK;
+	}
+	
+	private Node centre(Node n) {
+		if (n.level == LEAF_LEVEL + 1)
+			return leaf((n.left.bits >>> (LEAF_SIZE / 2)) | ((n.right.bits << (LEAF_SIZE / 2)) & LEAF_MASK));
+		return join(n.left.right, n.right.left);
+	}
+	
+	private Node leaf(int bits) {
+		return intern(new Node(bits));
+	}
+	
+	private Node join(Node left, Node right) {
+		return intern(new Node(left, right));
+	}
+	
+	private Node intern(Node n) {
+		Node c = nodes.get(n);
+		if (c != null)
+			return c;
+		nodes.put(n, n);
+		return n;
+	}
+	
+	private Node build(Node blocks[]) {
+		for (int count = blocks.length; count > 1; count /= 2)
+			for (int b = 0; b < count / 2; b++)
+				blocks[b] = join(blocks[2 * b], blocks[2 * b + 1]);
+		return blocks[0];
+	}
+	
+	private Node seed(int level, long i, boolean background) {
+		// a block of the given background with cell i flipped, if inside
+		if (level == LEAF_LEVEL) {
+			int bits = background ? LEAF_MASK : 0;
+			if (i >= 0 && i < LEAF_SIZE)
+				bits ^= 1 << i;
+			return leaf(bits);
+		}
+		long half = 1L << (level - 1);
+		if (i < 0 || i >= 2 * half) {
+			Node n = seed(level - 1, -1, background);
+			return join(n, n);
+		}
+		return join(seed(level - 1, i, background), seed(level - 1, i - half, background));
+	}
+	
+	public int getT() {
+		return t;
+	}
+	
+	public int getSize() {
+		return size;
+	}
+	
+	public Rule getRule() {
+		return rule;
+	}
+	
+	public Boundaries getBoundaries() {
+		return Boundaries.periodic;
+	}
+	
+	public UpdatePattern getUpdatePattern() {
+		return UpdatePattern.synchronous;
+	}
+	
+	public int getOnes() {
+		return (int) root.ones;
+	}
+	
+	public double getDensity() {
+		return (double) root.ones / size;
+	}
+	
+	public double getValue() {
+		// alpha = 0: omega is the state
+		return root.ones;
+	}
+	
+	public boolean getValue(int i) {
+		i = Math.floorMod(i, size);
+		Node n = root;
+		while (n.level > LEAF_LEVEL) {
+			int half = 1 << (n.level - 1);
+			if (i < half) {
+				n = n.left;
+			} else {
+				n = n.right;
+				i -= half;
+			}
+		}
+		return ((n.bits >>> i) & 1) != 0;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(size);
+		for (int i = 0; i < size; i++)
+			sb.append(getValue(i) ? '1' : '0');
+		return sb.toString();
+	}
+	
+	// immutable block of 2^level cells, equal blocks are shared through the node cache
+	private static final class Node {
+		
+		final int level;
+		final Node left;
+		final Node right;
+		final int bits; // leaves only, cell i is bit i
+		final long ones;
+		final int hash;
+		
+		Node(int bits) {
+			this.level = LEAF_LEVEL;
+			this.left = null;
+			this.right = null;
+			this.bits = bits;
+			this.ones = Integer.bitCount(bits);
+			this.hash = bits * 0x9E3779B1;
+		}
+		
+		Node(Node left, Node right) {
+			this.level = left.level + 1;
+			this.left = left;
+			this.right = right;
+			this.bits = 0;
+			this.ones = left.ones + right.ones;
+			this.hash = (left.hash * 0x9E3779B1 + Integer.rotateLeft(right.hash, 16)) ^ level;
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			// the children are cached nodes: compared by identity
+			if (!(o instanceof Node))
+				return false;
+			Node n = (Node) o;
+			return n.level == level && n.bits == bits && n.left == left && n.right == right;
+		}
+		
+	}
+	
+	// result cache key: a block and the jump (see advance)
+	private static final class Step {
+		
+		final Node node;
+		final int code;
+		
+		Step(Node node, int code) {
+			this.node = node;
+			this.code = code;
+		}
+		
+		@Override
+		public int hashCode() {
+			return node.hash * 31 + code;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Step))
+				return false;
+			Step s = (Step) o;
+			return s.node == node && s.code == code;
+		}
+		
+	}
+	
+	private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final int capacity;
+		
+		LruMap(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > capacity;
+		}
+		
+	}
+	
+}
@@ -21,14 +21,12 @@
 
 package com.github.andreax79.meca;
 
-import java.awt.Color;
-import java.awt.Graphics2D;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.List;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.management.JMException;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -40,137 +38,347 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.cli.PosixParser;
 
-import com.sun.image.codec.jpeg.JPEGCodec;
-import com.sun.image.codec.jpeg.JPEGEncodeParam;
-import com.sun.image.codec.jpeg.JPEGImageEncoder;
-
 public class Main {
 
-	private static int cellSize = 2;
-
 	public static Stats drawRule(int ruleNumber, int size, Boundaries boundaries, UpdatePattern updatePattern, int steps, double alpha) throws IOException {
 		return drawRule(ruleNumber, size, boundaries, updatePattern, steps, alpha, null, Output.all, ColorScheme.omegaColor);
 	}
 
 	public static Stats drawRule(int ruleNumber, int size, Boundaries boundaries, UpdatePattern updatePattern, int steps, double alpha, String pattern, Output output, ColorScheme colorScheme) throws IOException {
-		Rule rule = new Rule(ruleNumber);
-		Row row = new Row(size, rule, boundaries, updatePattern, pattern, alpha); // e.g. 00010011011111
-		Stats stats = new Stats();
+		return drawRule(new Configuration(ruleNumber, size, boundaries, updatePattern, steps, alpha, pattern), output, colorScheme);
+	}
+
+	public static Stats drawRule(Configuration configuration, Output output, ColorScheme colorScheme) throws IOException {
+		return drawRule(configuration, output, colorScheme, 1);
+	}
 
-		FileOutputStream finalImage = null;
-		Graphics2D g = null;
-		BufferedImage img = null;
-		
-		if (output != Output.noOutput) {
-			String fileName = "rule"+ruleNumber;
-			// pattern
-			if (pattern != null)
-				fileName += pattern;
-			// alpha
-			if (alpha > 0)
-				fileName += String.format("_a%02d", (int)(alpha*100));
-			// updatePattern
-			if (updatePattern != UpdatePattern.synchronous)
-				fileName += "-" + updatePattern;
-			fileName += ".jpeg";
+	public static Stats drawRule(Configuration configuration, Output output, ColorScheme colorScheme, int threads) throws IOException {
+		Simulation simulation = new Simulation(configuration, output, colorScheme);
+		simulation.setThreads(threads);
+		return drawRule(simulation);
+	}
 
-			File file = new File(fileName);
-			finalImage = new FileOutputStream(file);	
+	public static Stats drawRule(Simulation simulation) throws IOException {
+		return drawRule(simulation, null);
+	}
 
-			int width = (int) (cellSize*(size+1) * (output == Output.all ? 1.25 : 1));
-			int height = cellSize*(steps+1);
-			img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-			g = img.createGraphics();
-			g.setBackground(Color.white);
-			g.clearRect(0,0,width,height);
-			g.setColor(Color.black);
+	// with a cache, a run already done is not computed again
+	public static Stats drawRule(Simulation simulation, ResultCache cache) throws IOException {
+		Configuration configuration = simulation.getConfiguration();
+		Stats stats = cache != null ? cache.run(simulation) : simulation.run();
+		String cycle = "";
+		if (simulation.getPeriod() != 0)
+			cycle = " Transient: " + simulation.getTransient() + " Period: " + simulation.getPeriod();
+		System.out.println(configuration + " Means: " + String.format("%.6f",stats.getMeans()) + " Variance: " + String.format("%.6f",stats.getVariance()) + " Seed: " + configuration.getSeed() + cycle);
+		return stats;
+	}
+	
+	private static void jump(Configuration configuration) throws ParseException {
+		if (configuration.getAlpha() != 0 || configuration.getUpdatePattern() != UpdatePattern.synchronous
+				|| configuration.getBoundaries() != Boundaries.periodic)
+			throw new ParseException("--jump needs alpha 0, the synchronous update patter and periodic boundaries");
+		MacroRow row;
+		try {
+			row = new MacroRow(configuration.getWidth(), new Rule(configuration.getRuleNumber()), configuration.getPattern(), new RandomSource(configuration.getSeed()));
+		} catch (IllegalArgumentException ex) {
+			throw new ParseException(ex.getMessage());
+		}
+		row.advance(configuration.getSteps());
+		System.out.println(configuration + " Ones: " + row.getOnes() + " Density: " + String.format("%.6f", row.getDensity()) + " Seed: " + configuration.getSeed());
+	}
+	
+	private static void damage(Configuration configuration) throws ParseException {
+		DamageRow row;
+		try {
+			row = new DamageRow(configuration, configuration.getWidth() / 2);
+		} catch (IllegalArgumentException ex) {
+			throw new ParseException(ex.getMessage());
+		}
+		Stats stats = row.run(configuration.getSteps());
+		System.out.println(configuration + " Distance: " + row.getDistance() + " Spread: " + row.getSpread()
+				+ " Velocity: " + String.format("%.6f", row.getVelocity()) + " Mean damage: " + String.format("%.6f", stats.getMeans())
+				+ " Sensitivity: " + String.format("%.4f", row.getRule().getSensitivity()) + " Seed: " + configuration.getSeed());
+	}
+	
+	private static void ensemble(Configuration configuration, CommandLine line) throws ParseException, IOException {
+		Ensemble ensemble = new Ensemble(configuration);
+		try {
+			double width = Double.parseDouble(line.getOptionValue("ci-width", "0.01"));
+			if (width < 0)
+				throw new ParseException("invalid confidence interval width");
+			ensemble.setTargetWidth(width);
+		} catch (NumberFormatException ex) {
+			throw new ParseException("invalid confidence interval width");
+		}
+		try {
+			int replicas = Integer.parseInt(line.getOptionValue("max-replicas", "1000"));
+			if (replicas < 2)
+				throw new ParseException("invalid number of replicas (at least 2)");
+			ensemble.setReplicas(Math.min(4, replicas), replicas);
+		} catch (NumberFormatException ex) {
+			throw new ParseException("invalid number of replicas");
+		}
+		if (line.hasOption("threads"))
+			ensemble.setParallelism(parseThreads(line));
+		ensemble.run();
+		Stats stats = ensemble.getStats();
+		System.out.println(configuration + " Means: " + String.format("%.6f",ensemble.getMeans()) + " +/- " + String.format("%.6f",ensemble.getHalfWidth())
+				+ " (" + Math.round(ensemble.getConfidence() * 100) + "%) Variance: " + String.format("%.6f",stats.getVariance())
+				+ " Replicas: " + ensemble.getReplicas() + " Seed: " + configuration.getSeed());
+	}
+	
+	private static void sweep(CommandLine line) throws ParseException, IOException {
+		int rules[];
+		int widths[];
+		double alphas[];
+		int steps;
+		try {
+			rules = Sweep.parseInts(line.getOptionValue("rule", "0-15"));
+			for (int rule : rules)
+				if (rule < 0 || rule > 15)
+					throw new ParseException("invalid rule number");
+		} catch (NumberFormatException ex) {
+			throw new ParseException("invalid rule number");
+		}
+		if (!line.hasOption("width"))
+			throw new ParseException("no space width (use --width=XX)");
+		try {
+			widths = Sweep.parseInts(line.getOptionValue("width"));
+			for (int width : widths)
+				if (width < 1)
+					throw new ParseException("invalid width");
+		} catch (NumberFormatException ex) {
+			throw new ParseException("invalid width");
+		}
+		if (!line.hasOption("steps"))
+			throw new ParseException("no number of steps (use --steps=XX)");
+		try {
+			steps = Integer.parseInt(line.getOptionValue("steps"));
+			if (steps < 1)
+				throw new ParseException("invalid number of steps");
+		} catch (NumberFormatException ex) {
+			throw new ParseException("invalid number of steps");
+		}
+		try {
+			alphas = Sweep.parseDoubles(line.getOptionValue("alpha", "0"));
+			for (double alpha : alphas)
+				if (alpha < 0 || alpha > 1)
+					throw new ParseException("invalid alpha");
+		} catch (NumberFormatException ex) {
+			throw new ParseException("invalid alpha");
 		}
 		
-		int startMeansFromStep = 50;
-		List<Double> densities = new LinkedList<Double>();
-		double totalDensities = 0;
+		Boundaries boundaries[] = parseBoundaries(line);
 		
-		double prevValue = 0;
-		double prevDelta = 0;
-		double prevOnes = 0;
-		double prevOnesDelta = 0;
+		String updatePatternsValue = line.getOptionValue("update-patter", UpdatePattern.synchronous.toString());
+		UpdatePattern updatePatterns[];
+		if (updatePatternsValue.equals("all")) {
+			updatePatterns = UpdatePattern.values();
+		} else {
+			String names[] = updatePatternsValue.split(",");
+			updatePatterns = new UpdatePattern[names.length];
+			try {
+				for (int i = 0; i < names.length; i++)
+					updatePatterns[i] = UpdatePattern.getUpdatePattern(names[i].trim());
+			} catch (IllegalArgumentException ex) {
+				throw new ParseException(ex.getMessage());
+			}
+		}
+		
+		String pattern = line.getOptionValue("pattern");
+		if (line.hasOption("single-seed"))
+			pattern = "S";
+		else if (line.hasOption("single-seed-inverse"))
+			pattern = "SI";
 		
-		for (int t=0; t<steps; t++) {
-			if (t >= startMeansFromStep) {
-				double density = row.getDensity();
-				densities.add(density);
-				totalDensities+=density;
+		long seed = line.hasOption("seed") ? parseSeed(line) : RandomSource.newSeed();
+		Sweep sweep = new Sweep(rules, boundaries, updatePatterns, alphas, widths, steps, pattern, seed);
+		if (line.hasOption("threads"))
+			sweep.setParallelism(parseThreads(line));
+		sweep.setCache(parseCache(line));
+		Sweep.print(sweep.run(), System.out);
+	}
+	
+	private static void census(CommandLine line) throws ParseException {
+		int rules[];
+		int width;
+		try {
+			rules = Sweep.parseInts(line.getOptionValue("rule", "0-15"));
+			for (int rule : rules)
+				if (rule < 0 || rule > 15)
+					throw new ParseException("invalid rule number");
+		} catch (NumberFormatException ex) {
+			throw new ParseException("invalid rule number");
+		}
+		if (!line.hasOption("width"))
+			throw new ParseException("no space width (use --width=XX)");
+		try {
+			width = Integer.parseInt(line.getOptionValue("width"));
+			if (width < 1 || width > Census.MAX_SIZE)
+				throw new ParseException("invalid width (1-" + Census.MAX_SIZE + ")");
+		} catch (NumberFormatException ex) {
+			throw new ParseException("invalid width");
+		}
+		Boundaries boundaries[] = parseBoundaries(line);
+		for (int rule : rules) {
+			for (Boundaries b : boundaries) {
+				Census census = new Census(width, new Rule(rule), b);
+				if (line.hasOption("threads"))
+					census.setParallelism(parseThreads(line));
+				census.run();
+				census.print(System.out);
 			}
-			// System.out.println(String.format("%4d", t) + " " + row.toString() + " ones=" + row.getOnes());
-			if (output != Output.noOutput) {
-				for (int j=0; j<row.getSize(); j++) {
-					
-					switch (colorScheme) {
-					case noColor:						
-						if (row.getCell(j).getState()) {
-							g.setColor(Color.black);
-							g.fillRect(j*cellSize,t*cellSize,cellSize,cellSize);
-						}
-						break;						
-					case omegaColor:
-						g.setColor(row.getCell(j).getOmegaColor());
-						g.fillRect(j*cellSize,t*cellSize,cellSize,cellSize);
-						break;
-					case activationColor:
-						if (row.getCell(j).getState()) {
-							g.setColor(row.getCell(j).getColor());
-							g.fillRect(j*cellSize,t*cellSize,cellSize,cellSize);
-						}
-						break;
-					}
-				}
-				
-				if (output == Output.all) {
-					double value = row.getValue();
-					double delta = Math.abs(value - prevValue);
-					double ones = row.getOnes();
-					double onesDelta = Math.abs(ones - prevOnes);
-					if (t > 0) {
-						g.setColor(Color.red);
-						g.drawLine((int)(prevValue*cellSize/4.0)+cellSize*(size+1),(int)((t-1)*cellSize), (int)(value*cellSize/4.0)+cellSize*(size+1),(int)(t*cellSize));
-						g.setColor(Color.blue);
-						g.drawLine((int)(prevOnes*cellSize/4.0)+cellSize*(size+1),(int)((t-1)*cellSize), (int)(ones*cellSize/4.0)+cellSize*(size+1),(int)(t*cellSize));
-						if (t >1) {
-							g.setColor(Color.orange);
-							g.drawLine((int)(prevDelta*cellSize/4.0)+cellSize*(size+1),(int)((t-1)*cellSize), (int)(delta*cellSize/4.0)+cellSize*(size+1),(int)(t*cellSize));
-							g.setColor(Color.cyan);
-							g.drawLine((int)(prevOnesDelta*cellSize/4.0)+cellSize*(size+1),(int)((t-1)*cellSize), (int)(onesDelta*cellSize/4.0)+cellSize*(size+1),(int)(t*cellSize));
-						}
-					}
-					prevValue = value;
-					prevDelta = delta;
-					prevOnes = ones;
-					prevOnesDelta = onesDelta;
-				}
+		}
+	}
+	
+	private static Boundaries[] parseBoundaries(CommandLine line) throws ParseException {
+		String boundariesValue = line.getOptionValue("boundaries", "periodic");
+		if (boundariesValue.equals("all"))
+			return Boundaries.values();
+		String names[] = boundariesValue.split(",");
+		Boundaries boundaries[] = new Boundaries[names.length];
+		try {
+			for (int i = 0; i < names.length; i++)
+				boundaries[i] = Boundaries.valueOf(names[i].trim());
+		} catch (IllegalArgumentException ex) {
+			throw new ParseException("invalid boundaries");
+		}
+		return boundaries;
+	}
+	
+	private static void server(CommandLine line) throws ParseException, IOException {
+		int port;
+		int queueSize;
+		long maxCells;
+		try {
+			port = Integer.parseInt(line.getOptionValue("port", String.valueOf(Server.DEFAULT_PORT)));
+			if (port < 0 || port > 65535)
+				throw new ParseException("invalid port");
+		} catch (NumberFormatException ex) {
+			throw new ParseException("invalid port");
+		}
+		try {
+			queueSize = Integer.parseInt(line.getOptionValue("queue", String.valueOf(Server.DEFAULT_QUEUE_SIZE)));
+			if (queueSize < 0)
+				throw new ParseException("invalid queue size");
+		} catch (NumberFormatException ex) {
+			throw new ParseException("invalid queue size");
+		}
+		try {
+			maxCells = Long.parseLong(line.getOptionValue("max-cells", String.valueOf(Server.DEFAULT_MAX_CELLS)));
+			if (maxCells < 1)
+				throw new ParseException("invalid maximum number of cells");
+		} catch (NumberFormatException ex) {
+			throw new ParseException("invalid maximum number of cells");
+		}
+		int workers = line.hasOption("threads") ? parseThreads(line) : Runtime.getRuntime().availableProcessors();
+		Server server = new Server(port, workers, queueSize);
+		server.setMaxCells(maxCells);
+		server.start();
+		System.out.println("Listening on http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort()
+				+ "/ Workers: " + workers + " Queue: " + queueSize + (server.isVirtualThreads() ? " (virtual threads)" : ""));
+	}
+	
+	private static void resume(CommandLine line) throws ParseException, IOException {
+		Path file = Paths.get(line.getOptionValue("resume"));
+		Checkpoint checkpoint = Checkpoint.read(file);
+		Simulation simulation = new Simulation(checkpoint.getConfiguration(), Output.noOutput, ColorScheme.noColor);
+		simulation.setResume(checkpoint);
+		if (line.hasOption("threads"))
+			simulation.setThreads(parseThreads(line));
+		// keep saving to the same file unless told otherwise
+		setCheckpoint(simulation, line, line.hasOption("checkpoint") ? Paths.get(line.getOptionValue("checkpoint")) : file);
+		RunMonitor monitor = setMonitor(simulation, line);
+		try {
+			Main.drawRule(simulation);
+		} finally {
+			unregister(monitor);
+		}
+	}
+	
+	private static void setCheckpoint(Simulation simulation, CommandLine line, Path file) throws ParseException {
+		long steps;
+		long seconds;
+		try {
+			steps = Long.parseLong(line.getOptionValue("checkpoint-steps", "1000000"));
+			seconds = Long.parseLong(line.getOptionValue("checkpoint-seconds", "600"));
+			if (steps < 0 || seconds < 0)
+				throw new ParseException("invalid checkpoint interval");
+		} catch (NumberFormatException ex) {
+			throw new ParseException("invalid checkpoint interval");
+		}
+		simulation.setCheckpoint(file, steps, seconds);
+	}
+	
+	private static ResultCache parseCache(CommandLine line) throws ParseException, IOException {
+		if (!line.hasOption("cache"))
+			return null;
+		ResultCache cache = new ResultCache(Paths.get(line.getOptionValue("cache")));
+		if (line.hasOption("cache-size")) {
+			try {
+				long megabytes = Long.parseLong(line.getOptionValue("cache-size"));
+				if (megabytes < 1)
+					throw new ParseException("invalid cache size");
+				cache.setMaxBytes(megabytes << 20);
+			} catch (NumberFormatException ex) {
+				throw new ParseException("invalid cache size");
 			}
-				
-			row = new Row(row);
 		}
-		
-		double means = totalDensities / densities.size();
-		double var = 0;
-		for (double density : densities)
-			var += Math.pow(density - means, 2);
-		var = var / densities.size();
-		System.out.println("Rule: " + ruleNumber + " Boundaties: " + boundaries + " UpdatePattern: " + updatePattern + " Alpha: " + String.format("%.3f",alpha) + " Means: " + String.format("%.6f",means) + " Variance: " + String.format("%.6f",var));
-		stats.setMeans(means);
-		stats.setVariance(var);
-		
-		if (output != Output.noOutput) {
-			JPEGImageEncoder encoder = JPEGCodec.createJPEGEncoder(finalImage);
-			JPEGEncodeParam param = encoder.getDefaultJPEGEncodeParam(img);
-			param.setQuality(1.0f,true);
-			encoder.encode(img, param);
-			finalImage.flush();
-			finalImage.close();
+		return cache;
+	}
+	
+	private static RunMonitor setMonitor(Simulation simulation, CommandLine line) throws ParseException {
+		if (!line.hasOption("jmx") && !line.hasOption("progress"))
+			return null;
+		RunMonitor monitor = new RunMonitor();
+		if (line.hasOption("progress")) {
+			try {
+				long seconds = Long.parseLong(line.getOptionValue("progress"));
+				if (seconds < 1)
+					throw new ParseException("invalid progress interval");
+				monitor.setProgress(System.err, seconds);
+			} catch (NumberFormatException ex) {
+				throw new ParseException("invalid progress interval");
+			}
+		}
+		if (line.hasOption("jmx")) {
+			try {
+				monitor.register();
+			} catch (JMException ex) {
+				System.err.println("JMX registration failed: " + ex.getMessage());
+			}
+		}
+		simulation.setMonitor(monitor);
+		return monitor;
+	}
+	
+	private static void unregister(RunMonitor monitor) {
+		if (monitor == null)
+			return;
+		try {
+			monitor.unregister();
+		} catch (JMException ex) {
+			System.err.println("JMX unregistration failed: " + ex.getMessage());
+		}
+	}
+	
+	private static long parseSeed(CommandLine line) throws ParseException {
+		try {
+			return Long.parseLong(line.getOptionValue("seed"));
+		} catch (NumberFormatException ex) {
+			throw new ParseException("invalid seed");
+		}
+	}
+	
+	private static int parseThreads(CommandLine line) throws ParseException {
+		try {
+			int threads = Integer.parseInt(line.getOptionValue("threads"));
+			if (threads < 1)
+				throw new ParseException("invalid number of threads");
+			return threads;
+		} catch (NumberFormatException ex) {
+			throw new ParseException("invalid number of threads");
 		}
-				
-		return stats;
 	}
 	
 	@SuppressWarnings("static-access")
@@ -234,6 +442,146 @@ public class Main {
                 .withArgName("updatepatter")
                 .create());
 		
+		options.addOption(OptionBuilder.withLongOpt("seed")
+                .withDescription("random seed, the same seed replays the same run (default random)")
+                .hasArg()
+                .withArgName("seed")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("sweep")
+                .withDescription("run every combination of the given rules, boundaries, update patters, alphas and widths "
+                		+ "in parallel and print a table (rule, width and update-patter accept lists like 0-3,6; "
+                		+ "alpha accepts lists and ranges like 0.5:0.95:0.05; rule defaults to 0-15)")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("census")
+                .withDescription("synchronous rules without memory: follow every configuration of the row and print "
+                		+ "the attractors, basins, Garden-of-Eden states and transients (width up to " + Census.MAX_SIZE
+                		+ ", rule accepts lists, rule defaults to 0-15)")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("boundaries")
+                .withDescription("comma separated boundaries for --sweep and --census, or all (default periodic)")
+                .hasArg()
+                .withArgName("boundaries")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("trajectory")
+                .withDescription("record every step in a binary trajectory file")
+                .hasArg()
+                .withArgName("file")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("trajectory-omega")
+                .withDescription("include the quantised omega in the trajectory file")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("checkpoint")
+                .withDescription("save the state of the run to this file from time to time (only with --suppress-output)")
+                .hasArg()
+                .withArgName("file")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("checkpoint-steps")
+                .withDescription("steps between checkpoints, 0 to disable (default 1000000)")
+                .hasArg()
+                .withArgName("steps")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("checkpoint-seconds")
+                .withDescription("seconds between checkpoints, 0 to disable (default 600)")
+                .hasArg()
+                .withArgName("seconds")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("resume")
+                .withDescription("continue the run saved in a checkpoint file, and keep saving to it")
+                .hasArg()
+                .withArgName("file")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("jump")
+                .withDescription("go straight to the last step with the memoised engine and print its density "
+                		+ "(alpha 0, synchronous, periodic, width a power of two of at least 32)")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("damage")
+                .withDescription("step a copy of the row with the middle cell flipped in lockstep (same update order) and print "
+                		+ "the Hamming distance, the spread and the velocity of the damage and the static sensitivity of the rule (no output file)")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("ensemble")
+                .withDescription("run independent replicas in parallel until the confidence interval of the mean density "
+                		+ "is narrower than --ci-width or --max-replicas are done (no output file)")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("ci-width")
+                .withDescription("full width of the 95% confidence interval for --ensemble (default 0.01)")
+                .hasArg()
+                .withArgName("width")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("max-replicas")
+                .withDescription("replica budget for --ensemble (default 1000)")
+                .hasArg()
+                .withArgName("replicas")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("cache")
+                .withDescription("directory of the results of the finished runs (single runs and --sweep): a run with the same "
+                		+ "parameters and seed is read back instead of computed again, with its image and trajectory")
+                .hasArg()
+                .withArgName("dir")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("cache-size")
+                .withDescription("size limit of the --cache directory in MB, the least recently used results are removed (default "
+                		+ (ResultCache.DEFAULT_MAX_BYTES >> 20) + ")")
+                .hasArg()
+                .withArgName("MB")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("jmx")
+                .withDescription("publish the progress of the run as the MBean " + RunMonitor.OBJECT_NAME)
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("progress")
+                .withDescription("print the progress of the run on stderr every given seconds")
+                .hasArg()
+                .withArgName("seconds")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("server")
+                .withDescription("run jobs for local clients over HTTP: GET /run?rule=6&width=100&steps=100 streams the rows and "
+                		+ "the statistics as server-sent events (optional boundaries, update, alpha, pattern, seed, every, rows=false), "
+                		+ "GET /status reports the load; --threads jobs run at once")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("port")
+                .withDescription("port of --server, on localhost only (default " + Server.DEFAULT_PORT + ")")
+                .hasArg()
+                .withArgName("port")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("queue")
+                .withDescription("jobs of --server waiting for a worker before new ones are refused (default " + Server.DEFAULT_QUEUE_SIZE + ")")
+                .hasArg()
+                .withArgName("jobs")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("max-cells")
+                .withDescription("largest job of --server, as width * steps; larger ones are refused (default " + Server.DEFAULT_MAX_CELLS + ")")
+                .hasArg()
+                .withArgName("cells")
+                .create());
+		
+		options.addOption(OptionBuilder.withLongOpt("threads")
+                .withDescription("number of worker threads (--sweep and --ensemble: runs in parallel, --census: builds the map in parallel, --server: jobs at once, default number of processors; "
+                		+ "single run: cores stepping a synchronous row, default 1)")
+                .hasArg()
+                .withArgName("threads")
+                .create());
+		
 
 		// test
 		// args = new String[]{ "--rule=10", "--steps=500" , "--width=60", "-P" , "-s" };
@@ -242,6 +590,26 @@ public class Main {
 			// parse the command line arguments
 			CommandLine line = parser.parse( options, args );
 
+			if (line.hasOption("sweep")) {
+				sweep(line);
+				return;
+			}
+			
+			if (line.hasOption("census")) {
+				census(line);
+				return;
+			}
+			
+			if (line.hasOption("server")) {
+				server(line);
+				return;
+			}
+			
+			if (line.hasOption("resume")) {
+				resume(line);
+				return;
+			}
+
 			if (!line.hasOption("rule"))
 				throw new ParseException("no rule number (use --rule=XX)");
 			int rule;
@@ -329,7 +697,37 @@ public class Main {
 			if (line.hasOption("suppress-output"))
 				output = Output.noOutput;
 			
-			Main.drawRule(rule, width, boundaries, updatePatter, steps, alpha, pattern, output, colorScheme);
+			long seed = line.hasOption("seed") ? parseSeed(line) : RandomSource.newSeed();
+			Configuration configuration = new Configuration(rule, width, boundaries, updatePatter, steps, alpha, pattern, seed);
+			if (line.hasOption("jump")) {
+				jump(configuration);
+				return;
+			}
+			if (line.hasOption("damage")) {
+				damage(configuration);
+				return;
+			}
+			if (line.hasOption("ensemble")) {
+				ensemble(configuration, line);
+				return;
+			}
+			Simulation simulation = new Simulation(configuration, output, colorScheme);
+			if (line.hasOption("threads"))
+				simulation.setThreads(parseThreads(line));
+			if (line.hasOption("trajectory"))
+				simulation.setTrajectory(Paths.get(line.getOptionValue("trajectory")), line.hasOption("trajectory-omega"));
+			if (line.hasOption("checkpoint")) {
+				if (output != Output.noOutput)
+					throw new ParseException("checkpoints need --suppress-output");
+				setCheckpoint(simulation, line, Paths.get(line.getOptionValue("checkpoint")));
+			}
+			ResultCache cache = parseCache(line);
+			RunMonitor monitor = setMonitor(simulation, line);
+			try {
+				Main.drawRule(simulation, cache);
+			} finally {
+				unregister(monitor);
+			}
 
 		} catch(ParseException ex) {
             System.err.println("Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>");
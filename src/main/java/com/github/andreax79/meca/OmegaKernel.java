@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+// Synchronous memory update over primitive arrays: for each cell i in [from, to) the rule
+// is applied to (state[i], state[i + d]), then omega = omega * alpha + state and the
+// new state is the omega / bigOmega > 0.5 threshold, as in Cell(Cell, Cell)
+public abstract class OmegaKernel {
+
+	private static OmegaKernel instance;
+	
+	public static synchronized OmegaKernel getInstance() {
+		if (instance == null) {
+			if (!"false".equals(System.getProperty("meca.vector"))) {
+				try {
+					// needs --add-modules jdk.incubator.vector at run time
+					instance = (OmegaKernel) Class.forName("com.github.andreax79.meca.VectorOmegaKernel").getDeclaredConstructor().newInstance();
+				} catch (Throwable ex) {
+					instance = null;
+				}
+			}
+			if (instance == null)
+				instance = new ScalarOmegaKernel();
+		}
+		return instance;
+	}
+	
+	public abstract void update(Rule rule, double alpha, double bigOmega, boolean state[], double omega[], int d, boolean targetState[], double targetOmega[], int from, int to);
+	
+	public abstract String getName();
+	
+	static void scalarUpdate(Rule rule, double alpha, double bigOmega, boolean state[], double omega[], int d, boolean targetState[], double targetOmega[], int from, int to) {
+		for (int i = from; i < to; i++) {
+			boolean s = rule.compute(state[i], state[i + d]);
+			double o = (omega[i] * alpha) + (s ? 1 : 0);
+			if (o != 0.5)
+				s = (o / bigOmega) > 0.5;
+			targetState[i] = s;
+			targetOmega[i] = o;
+		}
+	}
+	
+	static class ScalarOmegaKernel extends OmegaKernel {
+		
+		public void update(Rule rule, double alpha, double bigOmega, boolean state[], double omega[], int d, boolean targetState[], double targetOmega[], int from, int to) {
+			scalarUpdate(rule, alpha, bigOmega, state, omega, d, targetState, targetOmega, from, to);
+		}
+		
+		public String getName() {
+			return "scalar";
+		}
+		
+	}
+	
+}
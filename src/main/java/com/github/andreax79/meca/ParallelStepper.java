@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+// Steps a synchronous row on several cores: every worker owns a contiguous chunk,
+// reads only the one cell halo of its neighbor chunks from the current buffer and
+// meets the others at a barrier once per generation, where the buffers are swapped.
+// The workers live as long as the stepper and wait for the next call of advance at a
+// second barrier, so a single generation costs two barrier crossings and no allocation.
+public class ParallelStepper {
+
+	public interface Chunked {
+		
+		// number of units (cells or words) to split among the workers
+		public int getChunkUnits();
+		
+		// compute the next generation of the units in [from, to)
+		public void stepChunk(int from, int to);
+		
+		// called once per generation, when every chunk has been computed
+		public void endGeneration();
+		
+	}
+	
+	private int threads;
+	private Thread workers[];
+	private CyclicBarrier start;
+	private CyclicBarrier generation;
+	// the job, published by the start barrier
+	private Chunked row;
+	private int generations;
+	private volatile boolean stopped;
+	private volatile Throwable failure;
+	
+	public ParallelStepper(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Invalid number of threads");
+		this.threads = threads;
+		if (threads > 1) {
+			start = new CyclicBarrier(threads);
+			generation = new CyclicBarrier(threads, () -> row.endGeneration());
+			workers = new Thread[threads - 1];
+			for (int k = 1; k < threads; k++) {
+				final int worker = k;
+				workers[k - 1] = new Thread(() -> park(worker), "meca-stepper");
+				workers[k - 1].setDaemon(true);
+				workers[k - 1].start();
+			}
+		}
+	}
+	
+	public int getThreads() {
+		return threads;
+	}
+	
+	public void advance(Chunked row, int generations) {
+		int units = row.getChunkUnits();
+		if (threads == 1 || units < 2) {
+			for (int g = 0; g < generations; g++) {
+				row.stepChunk(0, units);
+				row.endGeneration();
+			}
+			return;
+		}
+		if (stopped)
+			throw new IllegalStateException("Stepper shut down");
+		this.row = row;
+		this.generations = generations;
+		try {
+			// the calling thread takes the first chunk
+			start.await();
+			work(0);
+		} catch (InterruptedException ex) {
+			shutdown();
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex);
+		} catch (BrokenBarrierException ex) {
+			// a worker failed, report its exception
+			shutdown();
+			if (failure instanceof RuntimeException)
+				throw (RuntimeException) failure;
+			if (failure instanceof Error)
+				throw (Error) failure;
+			throw new RuntimeException(failure != null ? failure : ex);
+		} catch (RuntimeException | Error ex) {
+			shutdown();
+			throw ex;
+		}
+	}
+	
+	private void park(int worker) {
+		try {
+			while (true) {
+				start.await();
+				if (stopped)
+					return;
+				work(worker);
+			}
+		} catch (InterruptedException | BrokenBarrierException ex) {
+			// shut down, or another worker failed
+		} catch (RuntimeException | Error ex) {
+			failure = ex;
+			generation.reset();
+		}
+	}
+	
+	private void work(int worker) throws InterruptedException, BrokenBarrierException {
+		// the fields change for the next call as soon as the last generation is done
+		Chunked row = this.row;
+		int generations = this.generations;
+		int units = row.getChunkUnits();
+		int from = (int) (units * (long) worker / threads);
+		int to = (int) (units * (long) (worker + 1) / threads);
+		for (int g = 0; g < generations; g++) {
+			if (from < to)
+				row.stepChunk(from, to);
+			generation.await();
+		}
+	}
+	
+	public void shutdown() {
+		stopped = true;
+		if (workers != null)
+			for (Thread worker : workers)
+				worker.interrupt();
+	}
+	
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// Streaming PNG encoder (8-bit RGB): the scanlines are deflated as they are written,
+// so the memory used does not depend on the height of the image
+public class PngWriter implements Closeable {
+
+	private static final byte SIGNATURE[] = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+	private static final int CHUNK_SIZE = 1 << 16;
+	
+	private DataOutputStream out;
+	private int width;
+	private int height;
+	private int rows;
+	private Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private CRC32 crc = new CRC32();
+	private byte scanline[];
+	private byte buffer[] = new byte[CHUNK_SIZE];
+	private int buffered;
+	
+	public PngWriter(OutputStream out, int width, int height) throws IOException {
+		if (width < 1 || height < 1)
+			throw new IllegalArgumentException("Invalid image size");
+		this.out = new DataOutputStream(new BufferedOutputStream(out, CHUNK_SIZE));
+		this.width = width;
+		this.height = height;
+		scanline = new byte[1 + 3 * width];
+		this.out.write(SIGNATURE);
+		byte header[] = new byte[13];
+		writeInt(header, 0, width);
+		writeInt(header, 4, height);
+		header[8] = 8; // bit depth
+		header[9] = 2; // color type: RGB
+		writeChunk("IHDR", header, header.length);
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	// writes the next scanline, width pixels (0xRRGGBB) starting from offset
+	public void writeRow(int rgb[], int offset) throws IOException {
+		if (rows == height)
+			throw new IllegalStateException("All the rows have been written");
+		scanline[0] = 0; // filter: none
+		for (int x = 0, j = 1; x < width; x++) {
+			int pixel = rgb[offset + x];
+			scanline[j++] = (byte) (pixel >> 16);
+			scanline[j++] = (byte) (pixel >> 8);
+			scanline[j++] = (byte) pixel;
+		}
+		deflater.setInput(scanline);
+		while (!deflater.needsInput())
+			deflate();
+		rows++;
+	}
+	
+	public void close() throws IOException {
+		try {
+			if (rows != height)
+				throw new IOException("Missing rows: " + rows + " of " + height + " written");
+			deflater.finish();
+			while (!deflater.finished())
+				deflate();
+			if (buffered > 0)
+				writeChunk("IDAT", buffer, buffered);
+			writeChunk("IEND", buffer, 0);
+		} finally {
+			deflater.end();
+			out.close();
+		}
+	}
+	
+	private void deflate() throws IOException {
+		buffered += deflater.deflate(buffer, buffered, buffer.length - buffered);
+		if (buffered == buffer.length) {
+			writeChunk("IDAT", buffer, buffered);
+			buffered = 0;
+		}
+	}
+	
+	private void writeChunk(String type, byte data[], int length) throws IOException {
+		byte typeBytes[] = type.getBytes(StandardCharsets.US_ASCII);
+		out.writeInt(length);
+		out.write(typeBytes);
+		out.write(data, 0, length);
+		crc.reset();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+		out.writeInt((int) crc.getValue());
+	}
+	
+	private static void writeInt(byte data[], int offset, int value) {
+		data[offset] = (byte) (value >>> 24);
+		data[offset + 1] = (byte) (value >>> 16);
+		data[offset + 2] = (byte) (value >>> 8);
+		data[offset + 3] = (byte) value;
+	}
+	
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+// Per-run random source with the SplitMix64 algorithm of java.util.SplittableRandom.
+// It is not shared between threads, so there is no contention, runs are reproducible
+// from their seed, and independent streams for replicas or workers come from split().
+// Unlike SplittableRandom its state can be read back and restored.
+public class RandomSource implements RandomGenerator, Serializable {
+
+	private static final long serialVersionUID = 1L;
+	
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	
+	private long seed;
+	private long gamma;
+	
+	public RandomSource() {
+		this(ThreadLocalRandom.current().nextLong());
+	}
+	
+	public RandomSource(long seed) {
+		this(seed, GOLDEN_GAMMA);
+	}
+	
+	public RandomSource(long seed, long gamma) {
+		this.seed = seed;
+		this.gamma = gamma;
+	}
+	
+	public static long newSeed() {
+		return ThreadLocalRandom.current().nextLong();
+	}
+	
+	public RandomSource split() {
+		return new RandomSource(nextLong(), mixGamma(nextSeed()));
+	}
+	
+	@Override
+	public long nextLong() {
+		return mix64(nextSeed());
+	}
+	
+	// current state, see RandomSource(long, long)
+	public long getSeed() {
+		return seed;
+	}
+	
+	public long getGamma() {
+		return gamma;
+	}
+	
+	private long nextSeed() {
+		return seed += gamma;
+	}
+	
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+	
+	private static long mixGamma(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		int n = Long.bitCount(z ^ (z >>> 1));
+		return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+	
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Draws the space-time image straight into an int[] raster (0xRRGGBB) and streams it
+// to a PngWriter. Only two bands of cellSize rows are kept: the previous step, which
+// the side panel lines still draw on, and the current one. Cell colors come from
+// precomputed palettes, each cell is replicated into a cellSize x cellSize block.
+public class Renderer implements Closeable {
+
+	public static final int WHITE = 0xffffff;
+	public static final int BLACK = 0x000000;
+	public static final int RED = 0xff0000;
+	public static final int GREEN = 0x00ff00;
+	public static final int BLUE = 0x0000ff;
+	public static final int ORANGE = 0xffc800;
+	public static final int CYAN = 0x00ffff;
+	
+	private static final int LEVELS = 256;
+	// omega / bigOmega quantised to LEVELS, off cells then on cells (see Cell.getOmegaColor)
+	private static final int OMEGA_PALETTE[] = new int[2 * LEVELS];
+	// by activation code, see Cell.getActivation
+	private static final int ACTIVATION_PALETTE[] = { BLUE, GREEN, RED, BLACK };
+	
+	static {
+		for (int q = 0; q < LEVELS; q++) {
+			int c = LEVELS - 1 - q;
+			OMEGA_PALETTE[q] = 0xffff00 | c;
+			OMEGA_PALETTE[LEVELS + q] = (c << 16) | (c << 8) | c;
+		}
+	}
+	
+	private PngWriter writer;
+	private int width;
+	private int cellSize;
+	private int pixels[];
+	private int top;
+	private int colors[] = new int[0];
+	
+	public Renderer(PngWriter writer, int cellSize) {
+		this.writer = writer;
+		this.width = writer.getWidth();
+		this.cellSize = cellSize;
+		pixels = new int[2 * cellSize * width];
+		Arrays.fill(pixels, WHITE);
+		// the first step is drawn in the lower band
+		top = -cellSize;
+	}
+	
+	public static int omegaColor(boolean state, double omega, double bigOmega) {
+		double c = omega / bigOmega;
+		int q = c > 0 ? (int) (Math.min(c, 1) * (LEVELS - 1) + 0.5) : 0;
+		return OMEGA_PALETTE[state ? LEVELS + q : q];
+	}
+	
+	public static int activationColor(int activation) {
+		return activation == Cell.ACTIVATION_NONE ? WHITE : ACTIVATION_PALETTE[activation];
+	}
+	
+	// draws the cells of the current step
+	public void drawRow(Row row, ColorScheme colorScheme) {
+		int n = row.getSize();
+		int colors[] = colors(n);
+		for (int j = 0; j < n; j++) {
+			Cell cell = row.getCell(j);
+			switch (colorScheme) {
+			case noColor:
+				colors[j] = cell.getState() ? BLACK : WHITE;
+				break;
+			case omegaColor:
+				colors[j] = omegaColor(cell.getState(), cell.getOmega(), cell.getBigOmega());
+				break;
+			case activationColor:
+				colors[j] = activationColor(cell.getActivation());
+				break;
+			}
+		}
+		fillCells(colors, n);
+	}
+	
+	// draws the cells of the current step, the activation colors need the cells of a Row
+	public void drawRow(ArrayRow row, ColorScheme colorScheme) {
+		int n = row.getSize();
+		int colors[] = colors(n);
+		double bigOmega = row.getBigOmega();
+		for (int j = 0; j < n; j++) {
+			switch (colorScheme) {
+			case noColor:
+				colors[j] = row.getValue(j) ? BLACK : WHITE;
+				break;
+			case omegaColor:
+				colors[j] = omegaColor(row.getValue(j), row.getOmega(j), bigOmega);
+				break;
+			default:
+				throw new IllegalArgumentException("Color scheme not supported: " + colorScheme);
+			}
+		}
+		fillCells(colors, n);
+	}
+	
+	private int[] colors(int n) {
+		if (colors.length < n)
+			colors = new int[n];
+		return colors;
+	}
+	
+	private void fillCells(int colors[], int n) {
+		// the first pixel row of the lower band, then copies of it
+		int base = cellSize * width;
+		int x = base;
+		for (int j = 0; j < n; j++) {
+			int c = colors[j];
+			for (int k = 0; k < cellSize; k++)
+				pixels[x++] = c;
+		}
+		for (int r = 1; r < cellSize; r++)
+			System.arraycopy(pixels, base, pixels, base + r * width, x - base);
+	}
+	
+	// Bresenham line in image coordinates, clipped to the two bands
+	public void drawLine(int x0, int y0, int x1, int y1, int rgb) {
+		int dx = Math.abs(x1 - x0);
+		int dy = -Math.abs(y1 - y0);
+		int sx = x0 < x1 ? 1 : -1;
+		int sy = y0 < y1 ? 1 : -1;
+		int err = dx + dy;
+		int bottom = top + 2 * cellSize;
+		while (true) {
+			if (x0 >= 0 && x0 < width && y0 >= top && y0 < bottom)
+				pixels[(y0 - top) * width + x0] = rgb;
+			if (x0 == x1 && y0 == y1)
+				break;
+			int e2 = 2 * err;
+			if (e2 >= dy) {
+				err += dy;
+				x0 += sx;
+			}
+			if (e2 <= dx) {
+				err += dx;
+				y0 += sy;
+			}
+		}
+	}
+	
+	// the upper band is complete: write it and move down one step
+	public void endStep() throws IOException {
+		if (top >= 0)
+			writeBand(0);
+		System.arraycopy(pixels, cellSize * width, pixels, 0, cellSize * width);
+		Arrays.fill(pixels, cellSize * width, 2 * cellSize * width, WHITE);
+		top += cellSize;
+	}
+	
+	// writes the last step and the empty band below it
+	public void close() throws IOException {
+		if (top >= 0)
+			writeBand(0);
+		writeBand(cellSize);
+		writer.close();
+	}
+	
+	private void writeBand(int from) throws IOException {
+		for (int y = from; y < from + cellSize; y++)
+			writer.writeRow(pixels, y * width);
+	}
+	
+}
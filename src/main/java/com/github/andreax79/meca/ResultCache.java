@@ -0,0 +1,320 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Results of finished runs on disk, shared by all the processes using the same directory.
+// An entry is named after the SHA-256 of the canonical parameters of the run (and ENGINE_VERSION)
+// and holds the statistics and the cycle, the image and the trajectory of the run are kept next to it.
+// Files are written under a temporary name and moved in place, so nobody reads a partial entry, and
+// the least recently used entries are deleted when the directory grows over the size limit
+public class ResultCache {
+
+	// bump when a change to the engines changes the results of a run
+	public static final int ENGINE_VERSION = 2;
+	public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+	private static final String ENTRY = ".stats";
+	private static final String IMAGE = ".png";
+	private static final String TRAJECTORY = ".traj";
+	private static final String TEMPORARY = ".tmp";
+	private static final String LOCK = "lock";
+
+	private final Path dir;
+	private long maxBytes = DEFAULT_MAX_BYTES;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public ResultCache(Path dir) throws IOException {
+		this.dir = dir;
+		Files.createDirectories(dir);
+	}
+
+	public Path getDirectory() {
+		return dir;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	// size limit of the directory, checked after every new entry
+	public void setMaxBytes(long maxBytes) {
+		if (maxBytes < 1)
+			throw new IllegalArgumentException("Invalid cache size");
+		this.maxBytes = maxBytes;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	// the results of the run from the cache, or from running it (and then stored)
+	public Stats run(Simulation simulation) throws IOException {
+		if (!simulation.isReproducible())
+			return simulation.run();
+		String key = key(simulation);
+		String name = hash(key);
+		Entry entry = get(name, key, simulation);
+		if (entry != null) {
+			hits.incrementAndGet();
+			simulation.setCycle(entry.transientLength, entry.period);
+			return entry.stats;
+		}
+		misses.incrementAndGet();
+		Stats stats = simulation.run();
+		put(name, new Entry(key, stats, simulation.getTransient(), simulation.getPeriod()), simulation);
+		return stats;
+	}
+
+	// everything the results depend on, one way only (alpha by its bits, the pattern by its length);
+	// not the seed of a run that draws nothing from it, which hits whatever seed it was given
+	static String key(Simulation simulation) {
+		Configuration configuration = simulation.getConfiguration();
+		String pattern = configuration.getPattern();
+		StringBuilder sb = new StringBuilder();
+		sb.append("meca ").append(ENGINE_VERSION);
+		sb.append(" rule=").append(configuration.getRuleNumber());
+		sb.append(" width=").append(configuration.getWidth());
+		sb.append(" boundaries=").append(configuration.getBoundaries());
+		sb.append(" update=").append(configuration.getUpdatePattern());
+		sb.append(" steps=").append(configuration.getSteps());
+		sb.append(" alpha=").append(Long.toHexString(Double.doubleToLongBits(configuration.getAlpha())));
+		sb.append(" seed=").append(configuration.isRandom() ? String.valueOf(configuration.getSeed()) : "-");
+		sb.append(" cycles=").append(simulation.isDetectCycles());
+		sb.append(" output=").append(simulation.getOutput());
+		if (simulation.getOutput() != Output.noOutput)
+			sb.append(" colors=").append(simulation.getColorScheme());
+		if (simulation.getTrajectory() != null)
+			sb.append(" trajectory=").append(simulation.isTrajectoryOmega() ? "omega" : "cells");
+		sb.append(" pattern=");
+		if (pattern == null)
+			sb.append('-');
+		else
+			sb.append(pattern.length()).append(':').append(pattern);
+		return sb.toString();
+	}
+
+	static String hash(String key) {
+		try {
+			byte digest[] = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (byte b : digest)
+				sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			return sb.toString();
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	// null when missing, unreadable, another key with the same hash, or an artifact is gone
+	private Entry get(String name, String key, Simulation simulation) throws IOException {
+		Path file = dir.resolve(name + ENTRY);
+		Entry entry;
+		try {
+			entry = Entry.read(Files.readAllBytes(file));
+		} catch (IOException ex) {
+			return null;
+		}
+		if (!entry.key.equals(key))
+			return null;
+		try {
+			if (simulation.getOutput() != Output.noOutput)
+				Files.copy(dir.resolve(name + IMAGE), Path.of(simulation.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+			if (simulation.getTrajectory() != null)
+				Files.copy(dir.resolve(name + TRAJECTORY), simulation.getTrajectory(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (NoSuchFileException ex) {
+			return null;
+		}
+		try {
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException ex) {
+			// evicted meanwhile, the results are still good
+		}
+		return entry;
+	}
+
+	// the artifacts go first: an entry is never visible before them
+	private void put(String name, Entry entry, Simulation simulation) throws IOException {
+		if (simulation.getOutput() != Output.noOutput)
+			store(Path.of(simulation.getFileName()), dir.resolve(name + IMAGE));
+		if (simulation.getTrajectory() != null)
+			store(simulation.getTrajectory(), dir.resolve(name + TRAJECTORY));
+		Path tmp = Files.createTempFile(dir, name, TEMPORARY);
+		try {
+			Files.write(tmp, entry.toBytes());
+			move(tmp, dir.resolve(name + ENTRY));
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+		evict();
+	}
+
+	private void store(Path source, Path target) throws IOException {
+		Path tmp = Files.createTempFile(dir, target.getFileName().toString(), TEMPORARY);
+		try {
+			Files.copy(source, tmp, StandardCopyOption.REPLACE_EXISTING);
+			move(tmp, target);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	private static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException ex) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	// one process at a time (the others skip it), oldest entries first, with their artifacts
+	void evict() throws IOException {
+		try (FileChannel channel = FileChannel.open(dir.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			FileLock lock;
+			try {
+				lock = channel.tryLock();
+			} catch (OverlappingFileLockException ex) {
+				return;
+			}
+			if (lock == null)
+				return;
+			Map<String, Group> groups = new HashMap<String, Group>();
+			long total = 0;
+			try (Stream<Path> files = Files.list(dir)) {
+				for (Path file : (Iterable<Path>) files::iterator) {
+					String fileName = file.getFileName().toString();
+					int dot = fileName.indexOf('.');
+					if (dot < 0 || fileName.endsWith(TEMPORARY))
+						continue;
+					BasicFileAttributes attributes;
+					try {
+						attributes = Files.readAttributes(file, BasicFileAttributes.class);
+					} catch (NoSuchFileException ex) {
+						continue;
+					}
+					Group group = groups.computeIfAbsent(fileName.substring(0, dot), prefix -> new Group());
+					group.files.add(file);
+					group.bytes += attributes.size();
+					// orphan artifacts keep their own time, older than any entry using them
+					if (fileName.endsWith(ENTRY) || group.time == null)
+						group.time = attributes.lastModifiedTime();
+					total += attributes.size();
+				}
+			}
+			if (total <= maxBytes)
+				return;
+			List<Group> lru = new ArrayList<Group>(groups.values());
+			lru.sort((a, b) -> a.time.compareTo(b.time));
+			for (Group group : lru) {
+				if (total <= maxBytes)
+					break;
+				for (Path file : group.files)
+					Files.deleteIfExists(file);
+				total -= group.bytes;
+			}
+		}
+	}
+
+	private static class Group {
+		List<Path> files = new ArrayList<Path>();
+		long bytes;
+		FileTime time;
+	}
+
+	private static class Entry {
+
+		private static final int MAGIC = 0x4d434353;
+
+		// the full key, against hash collisions
+		String key;
+		Stats stats;
+		long transientLength;
+		long period;
+
+		Entry(String key, Stats stats, long transientLength, long period) {
+			this.key = key;
+			this.stats = stats;
+			this.transientLength = transientLength;
+			this.period = period;
+		}
+
+		byte[] toBytes() throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(MAGIC);
+			// not writeUTF, limited to 64 KB: a long pattern is in the key
+			byte utf8[] = key.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(utf8.length);
+			out.write(utf8);
+			stats.write(out);
+			out.writeLong(transientLength);
+			out.writeLong(period);
+			return bytes.toByteArray();
+		}
+
+		static Entry read(byte bytes[]) throws IOException {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a cache entry");
+			int length = in.readInt();
+			if (length < 0 || length > in.available())
+				throw new IOException("Not a cache entry");
+			byte utf8[] = new byte[length];
+			in.readFully(utf8);
+			String key = new String(utf8, StandardCharsets.UTF_8);
+			Stats stats = Stats.read(in);
+			return new Entry(key, stats, in.readLong(), in.readLong());
+		}
+
+	}
+
+}
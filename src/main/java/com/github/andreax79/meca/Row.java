@@ -21,23 +21,33 @@
 
 package com.github.andreax79.meca;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.random.RandomGenerator;
 
-public class Row {
+public class Row implements Lattice, ChangeTracking, Serializable {
 
-	private Cell cells[];
+	private static final long serialVersionUID = 2L;
+	
+	private transient Cell cells[];
 	private int t;
 	private Boundaries boundaries;
 	private UpdatePattern updatePattern;
 	private Cell fixed;
-	private int oasCyclicUpdateOrder[];
-	private int oasEqClockedUpdate[];
-	private int eqClockedTimes;
+	private Scheduler scheduler;
+	private transient Cell scratch[];
+	private RandomGenerator random;
+	private transient ChangeSet changes;
 	
 	public Row(int size, Rule rule, Boundaries boundaries, UpdatePattern updatePattern, boolean pattern[], double alpha) {
-		this(size, rule, boundaries, updatePattern, alpha);
+		this(size, rule, boundaries, updatePattern, pattern, alpha, new RandomSource());
+	}
+
+	public Row(int size, Rule rule, Boundaries boundaries, UpdatePattern updatePattern, boolean pattern[], double alpha, RandomGenerator random) {
+		this(size, rule, boundaries, updatePattern, alpha, random);
 		if (pattern == null)
 			return;
 		for (int i = 0; i < cells.length; i++)
@@ -45,7 +55,11 @@ public class Row {
 	}
 
 	public Row(int size, Rule rule, Boundaries boundaries, UpdatePattern updatePattern, String patternString, double alpha) {
-		this(size, rule, boundaries, updatePattern, alpha);
+		this(size, rule, boundaries, updatePattern, patternString, alpha, new RandomSource());
+	}
+
+	public Row(int size, Rule rule, Boundaries boundaries, UpdatePattern updatePattern, String patternString, double alpha, RandomGenerator random) {
+		this(size, rule, boundaries, updatePattern, alpha, random);
 		if (patternString == null || patternString.length() == 0)
 			return;
 		if (patternString.equalsIgnoreCase("S")) { // single seed
@@ -68,6 +82,11 @@ public class Row {
 	}
 	
 	public Row(int size, Rule rule, Boundaries boundaries, UpdatePattern updatePattern, double alpha) {
+		this(size, rule, boundaries, updatePattern, alpha, new RandomSource());
+	}
+	
+	public Row(int size, Rule rule, Boundaries boundaries, UpdatePattern updatePattern, double alpha, RandomGenerator random) {
+		this.random = random;
 		this.boundaries = boundaries;
 		this.updatePattern = updatePattern;
 		if (boundaries == Boundaries.fixed) {
@@ -77,135 +96,93 @@ public class Row {
 		t = 0;
 		cells = new Cell[size];
 		for (int i = 0; i < cells.length; i++)
-			cells[i] = new Cell(rule, alpha);
-		if (updatePattern == UpdatePattern.oasCyclic)
-			oasCyclicUpdateOrder = generateRandomOrderIndexes();
-		if (updatePattern == UpdatePattern.oasEqClocked10)
-			eqClockedTimes = 10;
-		else if (updatePattern == UpdatePattern.oasEqClocked60)
-			eqClockedTimes = 60;
-		else if (updatePattern == UpdatePattern.oasEqClocked100)
-			eqClockedTimes = 100;
-		else if (updatePattern == UpdatePattern.oasEqClocked500)
-			eqClockedTimes = 500;
-		if (eqClockedTimes != 0)
-			oasEqClockedUpdate = generateEqClockedTimes();
+			cells[i] = new Cell(rule, alpha, random);
+		if (updatePattern != UpdatePattern.synchronous) {
+			scheduler = Scheduler.create(updatePattern, size, random);
+			scratch = new Cell[scheduler.getScratchSize()];
+		}
 	}
 	
 	public Row(Row row) {
 		this.boundaries = row.boundaries;
 		this.updatePattern = row.updatePattern;
-		this.oasEqClockedUpdate = row.oasEqClockedUpdate;
-		this.eqClockedTimes = row.eqClockedTimes;
+		this.scheduler = row.scheduler;
+		this.scratch = row.scratch;
 		this.fixed = row.fixed;
-		this.oasCyclicUpdateOrder = row.oasCyclicUpdateOrder;
+		this.random = row.random;
+		this.changes = row.changes;
 		t = row.getT() + 1;
 		cells = new Cell[row.cells.length];
+		if (changes != null)
+			changes.clear();
 		
-		switch (updatePattern) {
-			case synchronous:
-				synchronousUpdate(row);
-				break;
-			case rasRandomIndependent:
-				rasRandomIndependentUpdate(row, 1);
-				break;
-			case rasRandomIndependent10:
-				rasRandomIndependentUpdate(row, 10);
-				break;
-			case rasRandomIndependent60:
-				rasRandomIndependentUpdate(row, 60);
-				break;
-			case rasRandomIndependent100:
-				rasRandomIndependentUpdate(row, 100);
-				break;
-			case rasRandomIndependent500:
-				rasRandomIndependentUpdate(row, 500);
-				break;
-			case rasRandomOrder:
-				rasRandomOrderUpdate(row);
-				break;
-			case oasCyclic:
-				oasCyclicUpdate(row);
-				break;
-			case oasEqClocked10:
-			case oasEqClocked60:
-			case oasEqClocked100:
-			case oasEqClocked500:
-				oasEqClockedUpdate(row);
-				break;
-			default:
-				throw new RuntimeException("Invalid update pattern");
+		if (updatePattern == UpdatePattern.synchronous) {
+			synchronousUpdate(row);
+		} else {
+			System.arraycopy(row.cells, 0, cells, 0, cells.length);
+			scheduler.step(new CellUpdater());
 		}
-
 	}
 	
-	private void synchronousUpdate(Row row) {
-		// all cells are updated in parallel at each time step
-		for (int i = 0; i < cells.length; i++)
-			cells[i] = new Cell(row.getCell(i),row.getCell((t % 2 == 0) ? (i+1) : (i-1)));
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		Cell.writeCells(out, cells.length, i -> cells[i]);
 	}
 	
-	private void rasRandomIndependentUpdate(Row row, int n) {
-		// at each time step, n cells to update are chosen at random
-		for (int i = 0; i < cells.length; i++)
-			cells[i] = row.cells[i];
-		for (int j = 0; j < n; j++) {
-			int i = (int)Math.floor(Math.random() * cells.length);
-			cells[i] = new Cell(getCell(i),getCell((t % 2 == 0) ? (i+1) : (i-1)));
-		}
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		cells = Cell.readCells(in);
+		if (scheduler != null)
+			scratch = new Cell[scheduler.getScratchSize()];
 	}
 	
-	private void rasRandomOrderUpdate(Row row) {
-		// at each time step, all nodes are updated, but in random order
-		int randomOrderIndexes[] = generateRandomOrderIndexes();
-		for (int i = 0; i < cells.length; i++)
-			cells[i] = row.cells[i];
-		for (int j = 0; j < cells.length; j++) {
-			int i = randomOrderIndexes[j];
-			cells[i] = new Cell(getCell(i),getCell((t % 2 == 0) ? (i+1) : (i-1)));
-		}
+	public Row next() {
+		return new Row(this);
 	}
 	
-	private void oasCyclicUpdate(Row row) {
-		// at each time step a cell is chosen according to a xed update order, 
-		// which was decided at random during initialization phase
-		for (int i = 0; i < cells.length; i++)
-			cells[i] = row.cells[i];
-		for (int j = 0; j < cells.length; j++) {
-			int i = oasCyclicUpdateOrder[j];
-			cells[i] = new Cell(getCell(i),getCell((t % 2 == 0) ? (i+1) : (i-1)));
-		}
+	public void setChanges(ChangeSet changes) {
+		if (changes != null && changes.getSize() != cells.length)
+			throw new IllegalArgumentException("Change set size is not " + cells.length);
+		this.changes = changes;
 	}
 	
-	private void oasEqClockedUpdate(Row row) {
-		Cell newCells[] = new Cell [cells.length];
-		System.arraycopy(row.cells, 0, cells, 0, cells.length);
-		for (int j = 0; j < eqClockedTimes; j++) {
-			for (int i = 0; i < cells.length; i++) {
-				if (oasEqClockedUpdate[i] == j)
-					newCells[i] = new Cell(getCell(i),getCell((t % 2 == 0) ? (i+1) : (i-1)));
-				else
-					newCells[i] = cells[i];
-			}
-			System.arraycopy(newCells, 0, cells, 0, cells.length);
+	private void synchronousUpdate(Row row) {
+		// all cells are updated in parallel at each time step
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = new Cell(row.getCell(i),row.getCell((t % 2 == 0) ? (i+1) : (i-1)));
+			if (changes != null)
+				record(i, row.cells[i]);
 		}
 	}
 	
-	private int[] generateRandomOrderIndexes() {
-		int result[] = new int [cells.length];
-		List<Integer> indexesSet = new LinkedList<Integer>();
-		for (int i=0; i<cells.length; i++)
-			indexesSet.add(i);
-		for (int i=0; i<cells.length; i++)
-			result[i] = indexesSet.remove((int)Math.floor(Math.random()*indexesSet.size()));
-		return result;
+	private void record(int i, Cell old) {
+		if (cells[i].getState() != old.getState()) {
+			changes.flip(i);
+			changes.addOnes(cells[i].getState() ? 1 : -1);
+		}
+		changes.addValue((cells[i].getOmega() - old.getOmega()) / old.getBigOmega());
 	}
 	
-	private int[] generateEqClockedTimes() {
-		int result[] = new int [cells.length];
-		for (int i=0; i<cells.length; i++)
-			result[i] = (int)Math.floor(Math.random()*eqClockedTimes);
-		return result;
+	private class CellUpdater implements Scheduler.Updater {
+		
+		public void update(int i) {
+			Cell old = cells[i];
+			cells[i] = new Cell(getCell(i),getCell((t % 2 == 0) ? (i+1) : (i-1)));
+			if (changes != null)
+				record(i, old);
+		}
+		
+		public void compute(int i, int k) {
+			scratch[k] = new Cell(getCell(i),getCell((t % 2 == 0) ? (i+1) : (i-1)));
+		}
+		
+		public void commit(int i, int k) {
+			Cell old = cells[i];
+			cells[i] = scratch[k];
+			if (changes != null)
+				record(i, old);
+		}
+		
 	}
 	
 	public Cell getCell(int i) {
@@ -220,6 +197,7 @@ public class Row {
 		case reflective:
 			if (i < 0) i = -i;
 			if (i >= cells.length) i = cells.length - i + (cells.length - 2);
+			if (cells.length == 1) i = 0; // a single cell is its own mirror
 			break;
 		case fixed:
 			if ((i < 0) || (i >= cells.length)) return fixed;
@@ -238,6 +216,30 @@ public class Row {
 		return cells.length;
 	}
 	
+	public Rule getRule() {
+		return cells[0].getRule();
+	}
+	
+	public RandomGenerator getRandom() {
+		return random;
+	}
+	
+	public Scheduler getScheduler() {
+		return scheduler;
+	}
+	
+	public double getAlpha() {
+		return cells[0].getAlpha();
+	}
+	
+	public Boundaries getBoundaries() {
+		return boundaries;
+	}
+	
+	public UpdatePattern getUpdatePattern() {
+		return updatePattern;
+	}
+	
 	public double getDensity() {
 		return getOnes() * 1d / getSize();
 	}
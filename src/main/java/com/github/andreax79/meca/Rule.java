@@ -62,6 +62,34 @@ public class Rule implements Serializable {
 		return result;
 	}
 	
+	public long compute(long self, long neighbor) {
+		// same truth tables as compute(boolean, boolean), 64 cells at a time
+		long result;
+		switch(n) {
+		case  0: result =  0L; break;
+		case  1: result =  ~ ( self | neighbor); break;
+		case  2: result =  ~ self & neighbor; break;
+		case  3: result =  ~ self; break;
+		case  4: result =  self & ~ neighbor; break;
+		case  5: result =  ~ neighbor; break;
+		case  6: result =  self ^ neighbor; break;
+		case  7: result =  ~ (self & neighbor); break;
+		case  8: result =  self & neighbor; break;
+		case  9: result =  ~(self ^ neighbor); break;
+		case 10: result =  neighbor; break;
+		case 11: result =  ~(self & ~neighbor); break;
+		case 12: result =  self; break;
+		case 13: result =  ~(~self & neighbor); break;
+		case 14: result =  self | neighbor; break;
+		default: result =  -1L; break;
+		}
+		return result;
+	}
+	
+	public int getNumber() {
+		return n;
+	}
+	
 	public double getSensitivity() { // Binder 1993, Binder 1994
 		double result = 0;
 		// 00
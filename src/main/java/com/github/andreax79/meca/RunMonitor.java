@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Progress of a running Simulation for JMX and for the progress log. The run thread only
+// writes a few volatile fields per step, the rates and the allocation are computed when
+// an attribute is read.
+public class RunMonitor implements RunMonitorMBean {
+
+	public static final String OBJECT_NAME = "com.github.andreax79.meca:type=RunMonitor";
+	
+	public static final String TRANSIENT = "transient";
+	public static final String STEPPING = "stepping";
+	public static final String RENDERING = "rendering";
+	public static final String ENCODING = "encoding";
+	public static final String CYCLE = "cycle";
+	public static final String DONE = "done";
+	
+	private volatile String configuration = "";
+	private volatile String phase = "";
+	private volatile int t;
+	private volatile int steps;
+	private volatile int cellsPerStep;
+	private volatile double densityMean = Double.NaN;
+	private volatile double densityVariance = Double.NaN;
+	private volatile int startT;
+	private volatile long startNanos;
+	private volatile long threadId = -1;
+	private volatile long startAllocated = -1;
+	private ObjectName objectName;
+	private PrintStream progressOut;
+	private long progressSeconds;
+	private ScheduledExecutorService progress;
+	
+	// called by the run thread
+	public void start(Configuration configuration, int t) {
+		this.configuration = configuration.toString();
+		this.steps = configuration.getSteps();
+		this.cellsPerStep = configuration.getUpdatePattern().getCellsPerStep(configuration.getWidth());
+		this.t = t;
+		this.startT = t;
+		this.densityMean = Double.NaN;
+		this.densityVariance = Double.NaN;
+		this.threadId = Thread.currentThread().getId();
+		this.startAllocated = allocatedBytes(threadId);
+		this.startNanos = System.nanoTime();
+		if (progressOut != null && progressSeconds > 0) {
+			progress = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "meca-progress");
+				thread.setDaemon(true);
+				return thread;
+			});
+			progress.scheduleAtFixedRate(() -> progressOut.println(getProgress()), progressSeconds, progressSeconds, TimeUnit.SECONDS);
+		}
+	}
+	
+	public void setPhase(String phase) {
+		this.phase = phase;
+	}
+	
+	public void update(int t, Stats stats) {
+		this.t = t;
+		if (stats.getCount() > 0) {
+			densityMean = stats.getMeans();
+			densityVariance = stats.getVariance();
+		}
+	}
+	
+	public void finish() {
+		phase = DONE;
+		if (progress != null) {
+			progress.shutdownNow();
+			progress = null;
+		}
+	}
+	
+	// prints getProgress() every given seconds while a run is going, 0 to disable
+	public void setProgress(PrintStream out, long seconds) {
+		this.progressOut = out;
+		this.progressSeconds = seconds;
+	}
+	
+	public String getProgress() {
+		int step = t;
+		StringBuilder sb = new StringBuilder();
+		sb.append("Step: ").append(step).append('/').append(steps);
+		sb.append(String.format(" (%.1f%%)", steps == 0 ? 100.0 : 100.0 * step / steps));
+		sb.append(" Phase: ").append(phase);
+		sb.append(String.format(" Cells/s: %.3g", getCellsPerSecond()));
+		sb.append(" Bytes/step: ").append(getAllocatedBytesPerStep());
+		sb.append(" ETA: ").append(getEtaSeconds()).append('s');
+		sb.append(String.format(" Means: %.6f Variance: %.6f", densityMean, densityVariance));
+		return sb.toString();
+	}
+	
+	public void register() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		objectName = new ObjectName(OBJECT_NAME);
+		if (server.isRegistered(objectName))
+			server.unregisterMBean(objectName);
+		server.registerMBean(this, objectName);
+	}
+	
+	public void unregister() throws JMException {
+		if (objectName != null && ManagementFactory.getPlatformMBeanServer().isRegistered(objectName))
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		objectName = null;
+	}
+	
+	private static long allocatedBytes(long threadId) {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threadId < 0 || !(threads instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+		if (!hotspot.isThreadAllocatedMemorySupported() || !hotspot.isThreadAllocatedMemoryEnabled())
+			return -1;
+		return hotspot.getThreadAllocatedBytes(threadId);
+	}
+	
+	public String getConfiguration() {
+		return configuration;
+	}
+
+	public String getPhase() {
+		return phase;
+	}
+
+	public int getStep() {
+		return t;
+	}
+
+	public int getSteps() {
+		return steps;
+	}
+
+	// cells updated (not the width times the steps) per second, average since the start of the run
+	public double getCellsPerSecond() {
+		double seconds = (System.nanoTime() - startNanos) / 1e9;
+		return seconds <= 0 ? 0 : (double) (t - startT) * cellsPerStep / seconds;
+	}
+
+	// average since the start of the run, -1 when the JVM can't tell
+	public long getAllocatedBytesPerStep() {
+		int done = t - startT;
+		long allocated = allocatedBytes(threadId);
+		if (done <= 0 || allocated < 0 || startAllocated < 0)
+			return -1;
+		return (allocated - startAllocated) / done;
+	}
+
+	// -1 until the first step is done
+	public long getEtaSeconds() {
+		int done = t - startT;
+		if (done <= 0)
+			return -1;
+		double seconds = (System.nanoTime() - startNanos) / 1e9;
+		return Math.round(seconds * (steps - t) / done);
+	}
+
+	public double getDensityMean() {
+		return densityMean;
+	}
+
+	public double getDensityVariance() {
+		return densityVariance;
+	}
+
+}
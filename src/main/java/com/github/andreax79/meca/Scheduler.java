@@ -0,0 +1,211 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.io.Serializable;
+import java.util.random.RandomGenerator;
+
+// Order in which an asynchronous update pattern visits the cells during one time step.
+// Every pattern costs O(n) per step at most: orders are shuffled in place into a reused
+// buffer and the equally clocked cells are bucketed by clock tick once, at creation.
+public abstract class Scheduler implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	
+	public interface Updater {
+		
+		// update cell i in place, from the current states
+		public void update(int i);
+		
+		// compute the next state of cell i into the scratch slot k without storing it
+		public void compute(int i, int k);
+		
+		// store the next state computed into the scratch slot k in cell i
+		public void commit(int i, int k);
+		
+	}
+	
+	public static Scheduler create(UpdatePattern updatePattern, int size, RandomGenerator random) {
+		switch (updatePattern) {
+			case rasRandomIndependent:
+				return new RandomIndependentScheduler(size, 1, random);
+			case rasRandomIndependent10:
+				return new RandomIndependentScheduler(size, 10, random);
+			case rasRandomIndependent60:
+				return new RandomIndependentScheduler(size, 60, random);
+			case rasRandomIndependent100:
+				return new RandomIndependentScheduler(size, 100, random);
+			case rasRandomIndependent500:
+				return new RandomIndependentScheduler(size, 500, random);
+			case rasRandomOrder:
+				return new RandomOrderScheduler(size, random);
+			case oasCyclic:
+				return new CyclicScheduler(size, random);
+			case oasEqClocked10:
+				return new EqClockedScheduler(size, 10, random);
+			case oasEqClocked60:
+				return new EqClockedScheduler(size, 60, random);
+			case oasEqClocked100:
+				return new EqClockedScheduler(size, 100, random);
+			case oasEqClocked500:
+				return new EqClockedScheduler(size, 500, random);
+			default:
+				throw new IllegalArgumentException("No scheduler for the " + updatePattern + " update pattern");
+		}
+	}
+	
+	// one time step
+	public abstract void step(Updater updater);
+	
+	// number of scratch slots used by compute/commit
+	public int getScratchSize() {
+		return 0;
+	}
+	
+	static void shuffle(int a[], RandomGenerator random) {
+		// Fisher-Yates, in place
+		for (int i = a.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = a[i];
+			a[i] = a[j];
+			a[j] = tmp;
+		}
+	}
+	
+	static int[] identity(int size) {
+		int result[] = new int[size];
+		for (int i = 0; i < size; i++)
+			result[i] = i;
+		return result;
+	}
+	
+	// at each time step, n cells to update are chosen at random
+	static class RandomIndependentScheduler extends Scheduler {
+
+		private static final long serialVersionUID = 1L;
+		
+		private int size;
+		private int cells;
+		private RandomGenerator random;
+		
+		RandomIndependentScheduler(int size, int cells, RandomGenerator random) {
+			this.size = size;
+			this.cells = cells;
+			this.random = random;
+		}
+		
+		public void step(Updater updater) {
+			for (int j = 0; j < cells; j++)
+				updater.update(random.nextInt(size));
+		}
+		
+	}
+	
+	// at each time step, all nodes are updated, but in random order
+	static class RandomOrderScheduler extends Scheduler {
+
+		private static final long serialVersionUID = 1L;
+		
+		private int order[];
+		private RandomGenerator random;
+		
+		RandomOrderScheduler(int size, RandomGenerator random) {
+			this.order = identity(size);
+			this.random = random;
+		}
+		
+		public void step(Updater updater) {
+			shuffle(order, random);
+			for (int j = 0; j < order.length; j++)
+				updater.update(order[j]);
+		}
+		
+	}
+	
+	// at each time step the cells are updated according to a fixed update order,
+	// which was decided at random during initialization phase
+	static class CyclicScheduler extends Scheduler {
+
+		private static final long serialVersionUID = 1L;
+		
+		private int order[];
+		
+		CyclicScheduler(int size, RandomGenerator random) {
+			this.order = identity(size);
+			shuffle(order, random);
+		}
+		
+		public void step(Updater updater) {
+			for (int j = 0; j < order.length; j++)
+				updater.update(order[j]);
+		}
+		
+	}
+	
+	// every cell has a random clock tick in [0, times); at each tick the cells of
+	// that tick are updated together from the states before the tick
+	static class EqClockedScheduler extends Scheduler {
+
+		private static final long serialVersionUID = 1L;
+		
+		private int bucketStart[];
+		private int bucketCells[];
+		private int scratchSize;
+		
+		EqClockedScheduler(int size, int times, RandomGenerator random) {
+			int ticks[] = new int[size];
+			for (int i = 0; i < size; i++)
+				ticks[i] = random.nextInt(times);
+			// counting sort of the cells by tick
+			bucketStart = new int[times + 1];
+			for (int i = 0; i < size; i++)
+				bucketStart[ticks[i] + 1]++;
+			for (int j = 0; j < times; j++) {
+				scratchSize = Math.max(scratchSize, bucketStart[j + 1]);
+				bucketStart[j + 1] += bucketStart[j];
+			}
+			bucketCells = new int[size];
+			int next[] = new int[times];
+			System.arraycopy(bucketStart, 0, next, 0, times);
+			for (int i = 0; i < size; i++)
+				bucketCells[next[ticks[i]]++] = i;
+		}
+		
+		public void step(Updater updater) {
+			for (int j = 0; j < bucketStart.length - 1; j++) {
+				int from = bucketStart[j];
+				int to = bucketStart[j + 1];
+				for (int k = from; k < to; k++)
+					updater.compute(bucketCells[k], k - from);
+				for (int k = from; k < to; k++)
+					updater.commit(bucketCells[k], k - from);
+			}
+		}
+		
+		public int getScratchSize() {
+			return scratchSize;
+		}
+		
+	}
+	
+}
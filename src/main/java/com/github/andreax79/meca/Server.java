@@ -0,0 +1,343 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Runs simulations for local clients without a JVM per run. GET (or POST) /run takes the parameters
+// of a job and streams its rows and running statistics back as server-sent events, GET /status reports the load.
+// At most workers jobs run at once, queueSize more wait for a worker and the others are refused (503),
+// as are the jobs over maxCells (width * steps, 400)
+public class Server {
+
+	public static final int DEFAULT_PORT = 8079;
+	public static final int DEFAULT_QUEUE_SIZE = 64;
+	public static final long DEFAULT_MAX_CELLS = 10000000000L;
+	// the steps without events write a comment at least this often, to notice a client gone
+	static final long HEARTBEAT_NANOS = 1000000000L;
+
+	private final HttpServer http;
+	private final ExecutorService executor;
+	private final boolean virtualThreads;
+	private final int workers;
+	private final int queueSize;
+	private final Semaphore admitted;
+	private final Semaphore running;
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicLong jobs = new AtomicLong();
+	private volatile long maxCells = DEFAULT_MAX_CELLS;
+	long heartbeatNanos = HEARTBEAT_NANOS;
+
+	public Server(int port, int workers, int queueSize) throws IOException {
+		if (workers < 1)
+			throw new IllegalArgumentException("Invalid number of workers");
+		if (queueSize < 0)
+			throw new IllegalArgumentException("Invalid queue size");
+		this.workers = workers;
+		this.queueSize = queueSize;
+		admitted = new Semaphore(workers + queueSize);
+		running = new Semaphore(workers, true);
+		ExecutorService virtual = newVirtualThreadExecutor();
+		virtualThreads = virtual != null;
+		// the exchanges mostly wait (for a worker, for the client), a thread each is fine
+		executor = virtual != null ? virtual : Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "meca-server");
+			thread.setDaemon(true);
+			return thread;
+		});
+		http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		http.setExecutor(executor);
+		http.createContext("/run", exchange -> {
+			try {
+				run(exchange);
+			} finally {
+				exchange.close();
+			}
+		});
+		http.createContext("/status", exchange -> {
+			try {
+				status(exchange);
+			} finally {
+				exchange.close();
+			}
+		});
+	}
+
+	// Executors.newVirtualThreadPerTaskExecutor() when the JDK has it (21+), null otherwise
+	static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException ex) {
+			return null;
+		}
+	}
+
+	public void start() {
+		http.start();
+	}
+
+	// closes the connections and interrupts the jobs, which stop at their next step
+	public void stop() {
+		http.stop(0);
+		executor.shutdownNow();
+	}
+
+	public int getPort() {
+		return http.getAddress().getPort();
+	}
+
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	public int getWorkers() {
+		return workers;
+	}
+
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	public long getMaxCells() {
+		return maxCells;
+	}
+
+	public void setMaxCells(long maxCells) {
+		if (maxCells < 1)
+			throw new IllegalArgumentException("Invalid maximum number of cells");
+		this.maxCells = maxCells;
+	}
+
+	public int getRunning() {
+		return active.get();
+	}
+
+	public int getQueued() {
+		return Math.max(0, workers + queueSize - admitted.availablePermits() - active.get());
+	}
+
+	private void run(HttpExchange exchange) throws IOException {
+		Map<String, String> parameters = parameters(exchange);
+		Configuration configuration;
+		int every;
+		boolean rows;
+		try {
+			configuration = configuration(parameters);
+			every = parseInt(parameters, "every", 1, 1, Integer.MAX_VALUE);
+			rows = !"false".equals(parameters.get("rows"));
+			if ((long) configuration.getWidth() * configuration.getSteps() > maxCells)
+				throw new IllegalArgumentException("Job too large: width * steps over " + maxCells);
+		} catch (IllegalArgumentException ex) {
+			send(exchange, 400, ex.getMessage());
+			return;
+		}
+		if (!admitted.tryAcquire()) {
+			send(exchange, 503, "The queue is full");
+			return;
+		}
+		try {
+			long job = jobs.incrementAndGet();
+			exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+			exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+			exchange.sendResponseHeaders(200, 0);
+			Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+			event(out, "queued", "{\"job\":" + job + ",\"seed\":" + configuration.getSeed() + "}");
+			running.acquire();
+			active.incrementAndGet();
+			try {
+				event(out, "started", "{\"job\":" + job + "}");
+				Simulation simulation = new Simulation(configuration, Output.noOutput, ColorScheme.noColor);
+				// time of the last write: a write is the only way to find out that the client has gone
+				long written[] = { System.nanoTime() };
+				simulation.setListener((lattice, stats) -> {
+					if (Thread.currentThread().isInterrupted())
+						throw new InterruptedIOException("Server stopped");
+					int t = lattice.getT();
+					if (t % every != 0) {
+						long now = System.nanoTime();
+						if (now - written[0] >= heartbeatNanos) {
+							// fails once the connection is closed, and the exception ends the job
+							out.write(":\n\n");
+							out.flush();
+							written[0] = now;
+						}
+						return;
+					}
+					written[0] = System.nanoTime();
+					if (rows)
+						event(out, "row", "{\"t\":" + t + ",\"row\":\"" + lattice + "\"}");
+					if (stats.getCount() > 0)
+						event(out, "stats", "{\"t\":" + t + "," + toJson(stats) + "}");
+				});
+				Stats stats;
+				try {
+					stats = simulation.run();
+				} catch (IllegalArgumentException ex) {
+					event(out, "error", "{\"message\":\"" + escape(ex.getMessage()) + "\"}");
+					return;
+				}
+				String cycle = simulation.getPeriod() == 0 ? "" : ",\"transient\":" + simulation.getTransient() + ",\"period\":" + simulation.getPeriod();
+				event(out, "done", "{\"job\":" + job + "," + toJson(stats) + cycle + "}");
+			} finally {
+				active.decrementAndGet();
+				running.release();
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		} finally {
+			admitted.release();
+		}
+	}
+
+	private void status(HttpExchange exchange) throws IOException {
+		String json = "{\"workers\":" + workers + ",\"queueSize\":" + queueSize + ",\"maxCells\":" + maxCells + ",\"running\":" + getRunning()
+				+ ",\"queued\":" + getQueued() + ",\"jobs\":" + jobs.get() + ",\"virtualThreads\":" + virtualThreads + "}";
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		send(exchange, 200, json);
+	}
+
+	static Configuration configuration(Map<String, String> parameters) {
+		if (!parameters.containsKey("rule"))
+			throw new IllegalArgumentException("No rule number (use rule=XX)");
+		int rule = parseInt(parameters, "rule", 0, 0, 15);
+		if (!parameters.containsKey("width"))
+			throw new IllegalArgumentException("No space width (use width=XX)");
+		int width = parseInt(parameters, "width", 0, 1, Integer.MAX_VALUE);
+		if (!parameters.containsKey("steps"))
+			throw new IllegalArgumentException("No number of steps (use steps=XX)");
+		int steps = parseInt(parameters, "steps", 0, 1, Integer.MAX_VALUE);
+		Boundaries boundaries;
+		try {
+			boundaries = Boundaries.valueOf(parameters.getOrDefault("boundaries", Boundaries.periodic.toString()));
+		} catch (IllegalArgumentException ex) {
+			throw new IllegalArgumentException("Invalid boundaries");
+		}
+		UpdatePattern updatePattern = UpdatePattern.getUpdatePattern(parameters.getOrDefault("update", UpdatePattern.synchronous.toString()));
+		double alpha;
+		try {
+			alpha = Double.parseDouble(parameters.getOrDefault("alpha", "0"));
+		} catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("Invalid alpha");
+		}
+		if (!(alpha >= 0 && alpha <= 1))
+			throw new IllegalArgumentException("Invalid alpha");
+		String pattern = parameters.get("pattern");
+		long seed;
+		try {
+			seed = parameters.containsKey("seed") ? Long.parseLong(parameters.get("seed")) : RandomSource.newSeed();
+		} catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("Invalid seed");
+		}
+		return new Configuration(rule, width, boundaries, updatePattern, steps, alpha, pattern, seed);
+	}
+
+	private static int parseInt(Map<String, String> parameters, String name, int defaultValue, int min, int max) {
+		String value = parameters.get(name);
+		if (value == null)
+			return defaultValue;
+		try {
+			int result = Integer.parseInt(value);
+			if (result >= min && result <= max)
+				return result;
+		} catch (NumberFormatException ex) {
+		}
+		throw new IllegalArgumentException("Invalid " + name);
+	}
+
+	// the query string, and for a POST the form in the body
+	private static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+		Map<String, String> parameters = new HashMap<String, String>();
+		parse(exchange.getRequestURI().getRawQuery(), parameters);
+		if (exchange.getRequestMethod().equals("POST")) {
+			try (InputStream in = exchange.getRequestBody()) {
+				parse(new String(in.readAllBytes(), StandardCharsets.UTF_8), parameters);
+			}
+		}
+		return parameters;
+	}
+
+	static void parse(String query, Map<String, String> parameters) {
+		if (query == null || query.isEmpty())
+			return;
+		for (String pair : query.trim().split("&")) {
+			int i = pair.indexOf('=');
+			String name = URLDecoder.decode(i < 0 ? pair : pair.substring(0, i), StandardCharsets.UTF_8);
+			String value = i < 0 ? "" : URLDecoder.decode(pair.substring(i + 1), StandardCharsets.UTF_8);
+			if (!name.isEmpty())
+				parameters.put(name, value);
+		}
+	}
+
+	private static String toJson(Stats stats) {
+		if (stats.getCount() == 0)
+			return "\"count\":0";
+		return "\"count\":" + stats.getCount() + ",\"means\":" + stats.getMeans() + ",\"variance\":" + stats.getVariance()
+				+ ",\"min\":" + stats.getMin() + ",\"max\":" + stats.getMax();
+	}
+
+	private static String escape(String s) {
+		if (s == null)
+			return "";
+		return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	// one event per step would be a chunk per step anyway: flush right away for the lowest latency
+	private static void event(Writer out, String name, String data) throws IOException {
+		out.write("event: ");
+		out.write(name);
+		out.write("\ndata: ");
+		out.write(data);
+		out.write("\n\n");
+		out.flush();
+	}
+
+	private static void send(HttpExchange exchange, int status, String body) throws IOException {
+		byte bytes[] = body.getBytes(StandardCharsets.UTF_8);
+		if (!exchange.getResponseHeaders().containsKey("Content-Type"))
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+}
@@ -0,0 +1,453 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// A single run: steps the row, collects the density statistics and draws the image
+public class Simulation {
+
+	private static int cellSize = 2;
+	
+	// the densities of the first steps are left out of the statistics
+	static final int START_MEANS_FROM_STEP = 50;
+	
+	// rows at least this many times wider than the cells updated per step use ChunkedRow
+	private static final int SPARSE_RATIO = 256;
+	
+	private Configuration configuration;
+	private Output output;
+	private ColorScheme colorScheme;
+	private int threads = 1;
+	private boolean detectCycles = true;
+	private long transientLength;
+	private long period;
+	private Path trajectory;
+	private boolean trajectoryOmega;
+	private Path checkpoint;
+	private long checkpointSteps;
+	private long checkpointSeconds;
+	private Checkpoint resume;
+	private RandomSource random;
+	private RunMonitor monitor;
+	private StepListener listener;
+	private List<Observer> observers = new ArrayList<Observer>();
+	
+	public Simulation(Configuration configuration, Output output, ColorScheme colorScheme) {
+		this.configuration = configuration;
+		this.output = output;
+		this.colorScheme = colorScheme;
+	}
+	
+	public Configuration getConfiguration() {
+		return configuration;
+	}
+
+	public Output getOutput() {
+		return output;
+	}
+
+	public ColorScheme getColorScheme() {
+		return colorScheme;
+	}
+
+	// the image written by the run, null without output
+	public String getFileName() {
+		if (output == Output.noOutput)
+			return null;
+		String pattern = configuration.getPattern();
+		double alpha = configuration.getAlpha();
+		String fileName = "rule" + configuration.getRuleNumber();
+		// pattern
+		if (pattern != null)
+			fileName += pattern;
+		// alpha
+		if (alpha > 0)
+			fileName += String.format("_a%02d", (int)(alpha*100));
+		// updatePattern
+		if (configuration.getUpdatePattern() != UpdatePattern.synchronous)
+			fileName += "-" + configuration.getUpdatePattern();
+		return fileName + ".png";
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	// cores used to step a single wide synchronous row
+	public void setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Invalid number of threads");
+		this.threads = threads;
+	}
+
+	public boolean isDetectCycles() {
+		return detectCycles;
+	}
+
+	// stop a deterministic run (synchronous, alpha 0, no output) as soon as a state repeats
+	public void setDetectCycles(boolean detectCycles) {
+		this.detectCycles = detectCycles;
+	}
+
+	// steps before the run entered its cycle, valid when getPeriod() is not 0
+	public long getTransient() {
+		return transientLength;
+	}
+
+	// period of the cycle reached by the run, 0 if none was detected
+	public long getPeriod() {
+		return period;
+	}
+
+	// restores the cycle of a run whose results were not computed again (see ResultCache)
+	void setCycle(long transientLength, long period) {
+		this.transientLength = transientLength;
+		this.period = period;
+	}
+
+	public Path getTrajectory() {
+		return trajectory;
+	}
+
+	public boolean isTrajectoryOmega() {
+		return trajectoryOmega;
+	}
+
+	// records every step of the run in a trajectory file (see Trajectory), omega included if requested
+	public void setTrajectory(Path trajectory, boolean omega) {
+		this.trajectory = trajectory;
+		this.trajectoryOmega = omega;
+	}
+
+	public Path getCheckpoint() {
+		return checkpoint;
+	}
+
+	// saves the state of the run every given steps or seconds (0 to disable either),
+	// only for runs without output
+	public void setCheckpoint(Path checkpoint, long steps, long seconds) {
+		this.checkpoint = checkpoint;
+		this.checkpointSteps = steps;
+		this.checkpointSeconds = seconds;
+	}
+
+	// continue from a checkpoint of this configuration instead of starting over
+	public void setResume(Checkpoint resume) {
+		this.resume = resume;
+	}
+
+	// random stream of the run instead of one seeded from the configuration, e.g. a split for a replica
+	public void setRandom(RandomSource random) {
+		this.random = random;
+	}
+
+	public RunMonitor getMonitor() {
+		return monitor;
+	}
+
+	// publishes the progress of the run (see RunMonitor), null to disable
+	public void setMonitor(RunMonitor monitor) {
+		this.monitor = monitor;
+	}
+
+	public StepListener getListener() {
+		return listener;
+	}
+
+	// called with every row of the run (no cycle shortcut then), null to disable
+	public void setListener(StepListener listener) {
+		this.listener = listener;
+	}
+
+	public List<Observer> getObservers() {
+		return observers;
+	}
+
+	// follows the run from the changes of every step (no cycle shortcut then)
+	public void addObserver(Observer observer) {
+		observers.add(observer);
+	}
+
+	public Stats run() throws IOException {
+		try {
+			return simulate();
+		} finally {
+			if (monitor != null)
+				monitor.finish();
+		}
+	}
+	
+	// the results depend only on the configuration and the options: no foreign random stream,
+	// no state from a checkpoint and nobody watching the single steps
+	boolean isReproducible() {
+		return random == null && resume == null && checkpoint == null && listener == null && observers.isEmpty();
+	}
+	
+	private void setPhase(String phase) {
+		if (monitor != null)
+			monitor.setPhase(phase);
+	}
+	
+	private Stats simulate() throws IOException {
+		if ((checkpoint != null || resume != null) && output != Output.noOutput)
+			throw new IllegalStateException("Checkpoints are supported only for runs without output");
+		if (resume != null && trajectory != null)
+			throw new IllegalStateException("A resumed run can't record a trajectory");
+		int ruleNumber = configuration.getRuleNumber();
+		int size = configuration.getWidth();
+		Boundaries boundaries = configuration.getBoundaries();
+		UpdatePattern updatePattern = configuration.getUpdatePattern();
+		int steps = configuration.getSteps();
+		double alpha = configuration.getAlpha();
+		String pattern = configuration.getPattern();
+		Rule rule = new Rule(ruleNumber);
+		RandomSource random = this.random != null ? this.random : new RandomSource(configuration.getSeed());
+		Lattice lattice;
+		if (resume != null)
+			lattice = resume.getLattice();
+		else if (output != Output.noOutput && colorScheme == ColorScheme.activationColor)
+			lattice = new Row(size, rule, boundaries, updatePattern, pattern, alpha, random); // e.g. 00010011011111, the cells keep their activation
+		else if (output != Output.noOutput)
+			lattice = new ArrayRow(size, rule, boundaries, updatePattern, pattern, alpha, random);
+		else if (alpha == 0 && updatePattern == UpdatePattern.synchronous)
+			lattice = new BitRow(new ArrayRow(size, rule, boundaries, updatePattern, pattern, alpha, random)); // step 64 cells per word
+		else if (updatePattern.getCellsPerStep(size) * SPARSE_RATIO <= size)
+			lattice = new ChunkedRow(size, rule, boundaries, updatePattern, pattern, alpha, random); // copy a few paths instead of rescanning the row
+		else
+			lattice = new ArrayRow(size, rule, boundaries, updatePattern, pattern, alpha, random); // nothing to draw, no per-cell objects
+		Stats stats = resume != null ? resume.getStats() : new Stats();
+		
+		CycleDetector detector = null;
+		BitRow initial = null;
+		transientLength = 0;
+		period = 0;
+		// all the rows are needed for the trajectory and the listener, and checkpoints must resume to the same statistics
+		if (detectCycles && trajectory == null && listener == null && observers.isEmpty() && checkpoint == null && resume == null && lattice instanceof BitRow) {
+			detector = new CycleDetector();
+			initial = new BitRow((BitRow) lattice);
+		}
+
+		Renderer renderer = null;
+		TrajectoryWriter trajectoryWriter = null;
+		ChangeSet changes = null;
+		try {
+			if (trajectory != null)
+				trajectoryWriter = new TrajectoryWriter(trajectory, configuration, trajectoryOmega);
+		
+			if (output != Output.noOutput) {
+				String fileName = getFileName();
+				int width = (int) (cellSize*(size+1) * (output == Output.all ? 1.25 : 1));
+				int height = cellSize*(steps+1);
+				renderer = new Renderer(new PngWriter(new FileOutputStream(fileName), width, height), cellSize);
+			}
+		
+			// the charts follow the ones and the value from the changes instead of scanning the row twice per step
+			List<Observer> observers = new ArrayList<Observer>(this.observers);
+			DensityObserver onesObserver = null;
+			ValueObserver valueObserver = null;
+			if (output == Output.all) {
+				onesObserver = new DensityObserver();
+				valueObserver = new ValueObserver();
+				observers.add(onesObserver);
+				observers.add(valueObserver);
+			}
+			if (!observers.isEmpty()) {
+				changes = new ChangeSet(size);
+				((ChangeTracking) lattice).setChanges(changes);
+				for (Observer observer : observers)
+					observer.start(lattice);
+			}
+		
+			if (threads > 1 && updatePattern == UpdatePattern.synchronous) {
+				if (lattice instanceof BitRow)
+					((BitRow) lattice).setThreads(threads);
+				else if (lattice instanceof ArrayRow)
+					((ArrayRow) lattice).setThreads(threads);
+			}
+		
+			double prevValue = 0;
+			double prevDelta = 0;
+			double prevOnes = 0;
+			double prevOnesDelta = 0;
+		
+			// the cells actually updated by a step, for the rates: one for rasRandomIndependent
+			int cellsPerStep = updatePattern.getCellsPerStep(size);
+			int first = lattice.getT();
+			long lastCheckpoint = System.nanoTime();
+			if (monitor != null)
+				monitor.start(configuration, first);
+			setPhase(first < START_MEANS_FROM_STEP ? RunMonitor.TRANSIENT : RunMonitor.STEPPING);
+		
+			for (int t=first; t<steps; t++) {
+				if (checkpoint != null && t > first && ((checkpointSteps > 0 && t % checkpointSteps == 0)
+						|| (checkpointSeconds > 0 && System.nanoTime() - lastCheckpoint >= checkpointSeconds * 1000000000L))) {
+					new Checkpoint(configuration, lattice, stats).write(checkpoint);
+					lastCheckpoint = System.nanoTime();
+				}
+				if (detector != null && detector.offer((BitRow) lattice)) {
+					period = detector.getPeriod();
+					transientLength = CycleDetector.findTransient(initial, period);
+					setPhase(RunMonitor.CYCLE);
+					finishCycle((BitRow) lattice, Math.max(t, START_MEANS_FROM_STEP), steps, stats);
+					if (monitor != null)
+						monitor.update(steps, stats);
+					break;
+				}
+				if (t >= START_MEANS_FROM_STEP) {
+					StatisticsEvent event = new StatisticsEvent();
+					event.begin();
+					double density = lattice.getDensity();
+					stats.add(density);
+					if (event.shouldCommit()) {
+						event.t = t;
+						event.density = density;
+						event.commit();
+					}
+				}
+				if (trajectoryWriter != null)
+					trajectoryWriter.append(lattice);
+				if (listener != null)
+					listener.step(lattice, stats);
+				// System.out.println(String.format("%4d", t) + " " + row.toString() + " ones=" + row.getOnes());
+				if (output != Output.noOutput) {
+					setPhase(RunMonitor.RENDERING);
+					RenderEvent renderEvent = new RenderEvent();
+					renderEvent.begin();
+					if (lattice instanceof Row)
+						renderer.drawRow((Row) lattice, colorScheme);
+					else
+						renderer.drawRow((ArrayRow) lattice, colorScheme);
+				
+					if (output == Output.all) {
+						double value = valueObserver.getValue();
+						double delta = Math.abs(value - prevValue);
+						double ones = onesObserver.getOnes();
+						double onesDelta = Math.abs(ones - prevOnes);
+						if (t > 0) {
+							renderer.drawLine((int)(prevValue*cellSize/4.0)+cellSize*(size+1),(int)((t-1)*cellSize), (int)(value*cellSize/4.0)+cellSize*(size+1),(int)(t*cellSize), Renderer.RED);
+							renderer.drawLine((int)(prevOnes*cellSize/4.0)+cellSize*(size+1),(int)((t-1)*cellSize), (int)(ones*cellSize/4.0)+cellSize*(size+1),(int)(t*cellSize), Renderer.BLUE);
+							if (t >1) {
+								renderer.drawLine((int)(prevDelta*cellSize/4.0)+cellSize*(size+1),(int)((t-1)*cellSize), (int)(delta*cellSize/4.0)+cellSize*(size+1),(int)(t*cellSize), Renderer.ORANGE);
+								renderer.drawLine((int)(prevOnesDelta*cellSize/4.0)+cellSize*(size+1),(int)((t-1)*cellSize), (int)(onesDelta*cellSize/4.0)+cellSize*(size+1),(int)(t*cellSize), Renderer.CYAN);
+							}
+						}
+						prevValue = value;
+						prevDelta = delta;
+						prevOnes = ones;
+						prevOnesDelta = onesDelta;
+					}
+					renderEvent.t = t;
+					renderEvent.commit();
+				
+					setPhase(RunMonitor.ENCODING);
+					EncodeEvent encodeEvent = new EncodeEvent();
+					encodeEvent.begin();
+					renderer.endStep();
+					encodeEvent.t = t;
+					encodeEvent.commit();
+				}
+			
+				setPhase(t + 1 < START_MEANS_FROM_STEP ? RunMonitor.TRANSIENT : RunMonitor.STEPPING);
+				StepEvent stepEvent = new StepEvent();
+				stepEvent.begin();
+				lattice = lattice.next();
+				if (stepEvent.shouldCommit()) {
+					stepEvent.t = t;
+					stepEvent.cells = cellsPerStep;
+					stepEvent.commit();
+				}
+				for (Observer observer : observers)
+					observer.step(lattice, changes);
+				if (monitor != null)
+					monitor.update(t + 1, stats);
+			}
+			
+			if (renderer != null) {
+				setPhase(RunMonitor.ENCODING);
+				EncodeEvent encodeEvent = new EncodeEvent();
+				encodeEvent.begin();
+				renderer.close();
+				renderer = null;
+				encodeEvent.t = steps;
+				encodeEvent.commit();
+			}
+			if (trajectoryWriter != null) {
+				trajectoryWriter.close();
+				trajectoryWriter = null;
+			}
+		} finally {
+			// also when a step or the listener fails (a client gone): the stepper threads must not outlive the run
+			if (changes != null)
+				((ChangeTracking) lattice).setChanges(null);
+			if (lattice instanceof BitRow)
+				((BitRow) lattice).setThreads(1);
+			else if (lattice instanceof ArrayRow)
+				((ArrayRow) lattice).setThreads(1);
+			// still open only after a failure: release the files, the failure is the error reported
+			closeQuietly(renderer);
+			closeQuietly(trajectoryWriter);
+		}
+		
+		return stats;
+	}
+	
+	private static void closeQuietly(Closeable closeable) {
+		if (closeable == null)
+			return;
+		try {
+			closeable.close();
+		} catch (IOException ex) {
+		}
+	}
+	
+	// from here the densities repeat with the period: collect one period and merge it
+	private void finishCycle(BitRow row, int from, int steps, Stats stats) {
+		long remaining = steps - from;
+		if (remaining <= 0)
+			return;
+		row.advance(from - row.getT());
+		long times = remaining / period;
+		long rest = remaining % period;
+		Stats cycle = new Stats();
+		Stats head = new Stats();
+		for (long i = 0; i < (times > 0 ? period : rest); i++) {
+			if (i == rest)
+				head = new Stats(cycle);
+			cycle.add(row.getDensity());
+			row.step();
+		}
+		if (times == 0) {
+			stats.merge(cycle);
+		} else {
+			stats.merge(cycle, times);
+			stats.merge(head);
+		}
+	}
+	
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import java.util.Arrays;
+
+// Bit-sliced synchronous engine for alpha = 0: up to 64 replicas of the same rule and size
+// stepped together, cell i of replica k is bit k of word i. One Rule.compute(long, long) per
+// cell advances every replica, the per-replica counts come from transposed 64x64 blocks.
+public class SlicedRow {
+
+	public static final int REPLICAS = 64;
+	
+	private long words[];
+	private long nextWords[];
+	private int size;
+	private int replicas;
+	private int t;
+	private Rule rule;
+	private Boundaries boundaries;
+	private int leftEdge;
+	private int rightEdge;
+	
+	public SlicedRow(int size, Rule rule, Boundaries boundaries, int replicas) {
+		if (replicas < 1 || replicas > REPLICAS)
+			throw new IllegalArgumentException("Invalid number of replicas");
+		this.size = size;
+		this.rule = rule;
+		this.boundaries = boundaries;
+		this.replicas = replicas;
+		words = new long[size];
+		nextWords = new long[size];
+		leftEdge = BitRow.leftEdgeIndex(size, boundaries);
+		rightEdge = BitRow.rightEdgeIndex(size, boundaries);
+	}
+	
+	public SlicedRow(SlicedRow row) {
+		this(row.size, row.rule, row.boundaries, row.replicas);
+		set(row);
+	}
+	
+	// copies the cells and the time step of a row of the same size
+	public void set(SlicedRow row) {
+		if (row.size != size)
+			throw new IllegalArgumentException("Rows of different size");
+		System.arraycopy(row.words, 0, words, 0, size);
+		t = row.t;
+	}
+	
+	// copies the cells of a row into replica k
+	public void setReplica(int k, Lattice row) {
+		if (k < 0 || k >= replicas)
+			throw new IndexOutOfBoundsException("Invalid replica " + k);
+		if (row.getSize() != size)
+			throw new IllegalArgumentException("Invalid row size");
+		long bit = 1L << k;
+		for (int i = 0; i < size; i++)
+			words[i] = row.getValue(i) ? words[i] | bit : words[i] & ~bit;
+	}
+	
+	public SlicedRow next() {
+		step();
+		return this;
+	}
+	
+	public void step() {
+		int last = size - 1;
+		if ((t + 1) % 2 == 0) {
+			// right neighbor
+			for (int i = 0; i < last; i++)
+				nextWords[i] = rule.compute(words[i], words[i + 1]);
+			nextWords[last] = rule.compute(words[last], rightEdge < 0 ? 0 : words[rightEdge]);
+		} else {
+			// left neighbor
+			nextWords[0] = rule.compute(words[0], leftEdge < 0 ? 0 : words[leftEdge]);
+			for (int i = 1; i < size; i++)
+				nextWords[i] = rule.compute(words[i], words[i - 1]);
+		}
+		long tmp[] = words;
+		words = nextWords;
+		nextWords = tmp;
+		t++;
+	}
+	
+	public void advance(int generations) {
+		for (int g = 0; g < generations; g++)
+			step();
+	}
+	
+	// ones of every replica: ones[k] for replica k
+	public void getOnes(int ones[]) {
+		// bit-sliced counters: bit k of counters[b] is bit b of the count of replica k, the words
+		// are added 8 at a time with carry-save adders, a transpose turns the counters into numbers
+		long counters[] = new long[REPLICAS];
+		long ones1 = 0;
+		long twos = 0;
+		long fours = 0;
+		int i = 0;
+		for (; i + 8 <= size; i += 8) {
+			long u = ones1 ^ words[i];
+			long twosA = (ones1 & words[i]) | (u & words[i + 1]);
+			ones1 = u ^ words[i + 1];
+			u = ones1 ^ words[i + 2];
+			long twosB = (ones1 & words[i + 2]) | (u & words[i + 3]);
+			ones1 = u ^ words[i + 3];
+			u = twos ^ twosA;
+			long foursA = (twos & twosA) | (u & twosB);
+			twos = u ^ twosB;
+			u = ones1 ^ words[i + 4];
+			twosA = (ones1 & words[i + 4]) | (u & words[i + 5]);
+			ones1 = u ^ words[i + 5];
+			u = ones1 ^ words[i + 6];
+			twosB = (ones1 & words[i + 6]) | (u & words[i + 7]);
+			ones1 = u ^ words[i + 7];
+			u = twos ^ twosA;
+			long foursB = (twos & twosA) | (u & twosB);
+			twos = u ^ twosB;
+			u = fours ^ foursA;
+			long eights = (fours & foursA) | (u & foursB);
+			fours = u ^ foursB;
+			add(counters, eights, 3);
+		}
+		for (; i < size; i++)
+			add(counters, words[i], 0);
+		add(counters, ones1, 0);
+		add(counters, twos, 1);
+		add(counters, fours, 2);
+		transpose(counters);
+		for (int k = 0; k < replicas; k++)
+			ones[k] = (int) counters[k];
+	}
+	
+	private static void add(long counters[], long carry, int b) {
+		for (; carry != 0; b++) {
+			long c = counters[b] & carry;
+			counters[b] ^= carry;
+			carry = c;
+		}
+	}
+	
+	public int getOnes(int k) {
+		int c = 0;
+		for (int i = 0; i < size; i++)
+			c += (int) (words[i] >>> k) & 1;
+		return c;
+	}
+	
+	public double getDensity(int k) {
+		return (double) getOnes(k) / size;
+	}
+	
+	public boolean getValue(int k, int i) {
+		return ((words[i] >>> k) & 1L) != 0;
+	}
+	
+	// transposes a 64x64 bit matrix in place: bit j of a[i] swaps with bit i of a[j]
+	static void transpose(long a[]) {
+		long m = 0x00000000ffffffffL;
+		for (int j = 32; j != 0; j >>= 1, m ^= m << j) {
+			for (int k = 0; k < 64; k = ((k | j) + 1) & ~j) {
+				long x = ((a[k] >>> j) ^ a[k | j]) & m;
+				a[k] ^= x << j;
+				a[k | j] ^= x;
+			}
+		}
+	}
+	
+	public int getT() {
+		return t;
+	}
+	
+	public int getSize() {
+		return size;
+	}
+	
+	public int getReplicas() {
+		return replicas;
+	}
+	
+	public Rule getRule() {
+		return rule;
+	}
+	
+	public Boundaries getBoundaries() {
+		return boundaries;
+	}
+	
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(words);
+	}
+	
+	// same cells, whatever the time step
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		SlicedRow other = (SlicedRow) obj;
+		return size == other.size && Arrays.equals(words, other.words);
+	}
+	
+	// cells of replica k
+	public String toString(int k) {
+		StringBuilder sb = new StringBuilder(size);
+		for (int i = 0; i < size; i++)
+			sb.append(getValue(k, i) ? '1' : '0');
+		return sb.toString();
+	}
+	
+}
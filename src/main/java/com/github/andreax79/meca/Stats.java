@@ -19,24 +19,240 @@
  *
  */
 
+
 package com.github.andreax79.meca;
 
-public class Stats {
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+// Streaming statistics in constant memory: running mean and central moments
+// (Welford, Pebay's update and merge formulas), min/max and batch means for
+// an autocorrelation-corrected error of the mean
+public class Stats implements Serializable {
 
+	private static final long serialVersionUID = 1L;
+	
+	private static final int BATCHES = 64;
+	
+	private long count;
 	private double means;
-	private double variance;
+	private double m2;
+	private double m3;
+	private double m4;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
 	
-	public double getMeans() {
-		return means;
+	// when all the batches are filled, adjacent pairs are merged and the batch size doubles
+	private double batchMeans[] = new double[BATCHES];
+	private int batches;
+	private long batchSize = 1;
+	private double batchSum;
+	private long batchCount;
+	
+	public Stats() {
+	}
+	
+	public Stats(Stats other) {
+		copy(other);
+	}
+	
+	public void add(double x) {
+		long n1 = count;
+		count++;
+		double n = count;
+		double delta = x - means;
+		double deltaN = delta / n;
+		double deltaN2 = deltaN * deltaN;
+		double term1 = delta * deltaN * n1;
+		means += deltaN;
+		m4 += term1 * deltaN2 * (n * n - 3 * n + 3) + 6 * deltaN2 * m2 - 4 * deltaN * m3;
+		m3 += term1 * deltaN * (n - 2) - 3 * deltaN * m2;
+		m2 += term1;
+		if (x < min)
+			min = x;
+		if (x > max)
+			max = x;
+		batchSum += x;
+		batchCount++;
+		if (batchCount == batchSize) {
+			addBatch(batchSum / batchSize);
+			batchSum = 0;
+			batchCount = 0;
+		}
+	}
+	
+	private void addBatch(double mean) {
+		batchMeans[batches++] = mean;
+		if (batches == BATCHES)
+			fold();
+	}
+	
+	private void fold() {
+		for (int i = 0; i < batches / 2; i++)
+			batchMeans[i] = (batchMeans[2 * i] + batchMeans[2 * i + 1]) / 2;
+		if (batches % 2 != 0) {
+			// an unpaired batch goes back to the partial one
+			batchSum += batchMeans[batches - 1] * batchSize;
+			batchCount += batchSize;
+		}
+		batches /= 2;
+		batchSize *= 2;
+	}
+	
+	public void merge(Stats other) {
+		if (other.count == 0)
+			return;
+		if (count == 0) {
+			copy(other);
+			return;
+		}
+		double na = count;
+		double nb = other.count;
+		double n = na + nb;
+		double delta = other.means - means;
+		double delta2 = delta * delta;
+		double newM2 = m2 + other.m2 + delta2 * na * nb / n;
+		double newM3 = m3 + other.m3 + delta2 * delta * na * nb * (na - nb) / (n * n)
+				+ 3 * delta * (na * other.m2 - nb * m2) / n;
+		double newM4 = m4 + other.m4 + delta2 * delta2 * na * nb * (na * na - na * nb + nb * nb) / (n * n * n)
+				+ 6 * delta2 * (na * na * other.m2 + nb * nb * m2) / (n * n)
+				+ 4 * delta * (na * other.m3 - nb * m3) / n;
+		means += delta * nb / n;
+		m2 = newM2;
+		m3 = newM3;
+		m4 = newM4;
+		count += other.count;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		
+		// batches of the two runs are concatenated at the larger batch size
+		Stats o = new Stats();
+		o.copy(other);
+		while (batchSize < o.batchSize)
+			fold();
+		while (o.batchSize < batchSize)
+			o.fold();
+		for (int i = 0; i < o.batches; i++)
+			addBatch(o.batchMeans[i]);
+		batchSum += o.batchSum;
+		batchCount += o.batchCount;
+		while (batchCount >= batchSize) {
+			double mean = batchSum / batchCount;
+			addBatch(mean);
+			batchSum -= mean * batchSize;
+			batchCount -= batchSize;
+		}
+	}
+	
+	// merges a sequence repeated the given number of times, by doubling
+	public void merge(Stats other, long times) {
+		Stats power = new Stats(other);
+		while (times > 0) {
+			if ((times & 1) != 0)
+				merge(power);
+			times >>= 1;
+			if (times > 0)
+				power.merge(new Stats(power));
+		}
+	}
+	
+	private void copy(Stats other) {
+		count = other.count;
+		means = other.means;
+		m2 = other.m2;
+		m3 = other.m3;
+		m4 = other.m4;
+		min = other.min;
+		max = other.max;
+		System.arraycopy(other.batchMeans, 0, batchMeans, 0, BATCHES);
+		batches = other.batches;
+		batchSize = other.batchSize;
+		batchSum = other.batchSum;
+		batchCount = other.batchCount;
+	}
+	
+	// compact binary form, only the filled batches
+	void write(DataOutput out) throws IOException {
+		out.writeLong(count);
+		out.writeDouble(means);
+		out.writeDouble(m2);
+		out.writeDouble(m3);
+		out.writeDouble(m4);
+		out.writeDouble(min);
+		out.writeDouble(max);
+		out.writeInt(batches);
+		for (int i = 0; i < batches; i++)
+			out.writeDouble(batchMeans[i]);
+		out.writeLong(batchSize);
+		out.writeDouble(batchSum);
+		out.writeLong(batchCount);
+	}
+	
+	static Stats read(DataInput in) throws IOException {
+		Stats stats = new Stats();
+		stats.count = in.readLong();
+		stats.means = in.readDouble();
+		stats.m2 = in.readDouble();
+		stats.m3 = in.readDouble();
+		stats.m4 = in.readDouble();
+		stats.min = in.readDouble();
+		stats.max = in.readDouble();
+		stats.batches = in.readInt();
+		if (stats.batches < 0 || stats.batches > BATCHES)
+			throw new IOException("Invalid statistics");
+		for (int i = 0; i < stats.batches; i++)
+			stats.batchMeans[i] = in.readDouble();
+		stats.batchSize = in.readLong();
+		stats.batchSum = in.readDouble();
+		stats.batchCount = in.readLong();
+		return stats;
 	}
-	public void setMeans(double means) {
-		this.means = means;
+	
+	public long getCount() {
+		return count;
 	}
+	
+	public double getMeans() {
+		return count == 0 ? Double.NaN : means;
+	}
+	
+	// population variance
 	public double getVariance() {
-		return variance;
+		return count == 0 ? Double.NaN : m2 / count;
 	}
-	public void setVariance(double variance) {
-		this.variance = variance;
+	
+	public double getSkewness() {
+		return m2 == 0 ? Double.NaN : Math.sqrt(count) * m3 / Math.pow(m2, 1.5);
+	}
+	
+	// excess kurtosis
+	public double getKurtosis() {
+		return m2 == 0 ? Double.NaN : count * m4 / (m2 * m2) - 3;
+	}
+	
+	public double getMin() {
+		return min;
+	}
+	
+	public double getMax() {
+		return max;
+	}
+	
+	// standard error of the mean from the batch means, NaN with less than two batches
+	public double getError() {
+		if (batches < 2)
+			return Double.NaN;
+		double mean = 0;
+		for (int i = 0; i < batches; i++)
+			mean += batchMeans[i];
+		mean /= batches;
+		double var = 0;
+		for (int i = 0; i < batches; i++)
+			var += (batchMeans[i] - mean) * (batchMeans[i] - mean);
+		var /= batches - 1;
+		return Math.sqrt(var / batches);
 	}
 	
 }
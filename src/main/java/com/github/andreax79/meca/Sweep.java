@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Runs every combination of rules, boundaries, update patterns, alphas and widths
+// on a work-stealing pool and collects the statistics in a single table
+public class Sweep {
+
+	private List<Configuration> configurations = new ArrayList<Configuration>();
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private ResultCache cache;
+	
+	public Sweep(int ruleNumbers[], Boundaries boundaries[], UpdatePattern updatePatterns[], double alphas[], int widths[], int steps, String pattern) {
+		this(ruleNumbers, boundaries, updatePatterns, alphas, widths, steps, pattern, RandomSource.newSeed());
+	}
+	
+	public Sweep(int ruleNumbers[], Boundaries boundaries[], UpdatePattern updatePatterns[], double alphas[], int widths[], int steps, String pattern, long seed) {
+		// every run gets its own seed, drawn in enumeration order so the whole sweep replays from one seed
+		RandomSource seeds = new RandomSource(seed);
+		for (int ruleNumber : ruleNumbers)
+			for (Boundaries b : boundaries)
+				for (UpdatePattern updatePattern : updatePatterns)
+					for (double alpha : alphas)
+						for (int width : widths)
+							configurations.add(new Configuration(ruleNumber, width, b, updatePattern, steps, alpha, pattern, seeds.nextLong()));
+	}
+	
+	public List<Configuration> getConfigurations() {
+		return configurations;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Invalid parallelism");
+		this.parallelism = parallelism;
+	}
+
+	public ResultCache getCache() {
+		return cache;
+	}
+
+	// runs already in the cache are not computed again, null to disable
+	public void setCache(ResultCache cache) {
+		this.cache = cache;
+	}
+
+	public Map<Configuration, Stats> run() throws IOException {
+		Stats results[] = new Stats[configurations.size()];
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new SweepTask(results, 0, results.length));
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		} finally {
+			pool.shutdown();
+		}
+		Map<Configuration, Stats> table = new LinkedHashMap<Configuration, Stats>();
+		for (int i = 0; i < results.length; i++)
+			table.put(configurations.get(i), results[i]);
+		return table;
+	}
+	
+	private class SweepTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		
+		private Stats results[];
+		private int from;
+		private int to;
+		
+		SweepTask(Stats results[], int from, int to) {
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				// split until a single run is left, idle workers steal the other halves
+				int middle = (from + to) >>> 1;
+				invokeAll(new SweepTask(results, from, middle), new SweepTask(results, middle, to));
+				return;
+			}
+			try {
+				Simulation simulation = new Simulation(configurations.get(from), Output.noOutput, ColorScheme.noColor);
+				results[from] = cache != null ? cache.run(simulation) : simulation.run();
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+		
+	}
+	
+	public static void print(Map<Configuration, Stats> table, PrintStream out) {
+		out.println(String.format("%-4s %-10s %-24s %-6s %-10s %-10s %-10s %-10s %s", "rule", "boundaries", "updatePattern", "alpha", "width", "means", "variance", "error", "seed"));
+		for (Map.Entry<Configuration, Stats> entry : table.entrySet()) {
+			Configuration c = entry.getKey();
+			Stats stats = entry.getValue();
+			out.println(String.format("%-4d %-10s %-24s %-6.3f %-10d %-10.6f %-10.6f %-10.6f %d", c.getRuleNumber(), c.getBoundaries(), c.getUpdatePattern(), c.getAlpha(), c.getWidth(), stats.getMeans(), stats.getVariance(), stats.getError(), c.getSeed()));
+		}
+	}
+	
+	// "0-15" or "1,3,6-8"
+	public static int[] parseInts(String s) {
+		List<Integer> values = new ArrayList<Integer>();
+		for (String part : s.split(",")) {
+			part = part.trim();
+			int dash = part.indexOf('-', 1);
+			if (dash < 0) {
+				values.add(Integer.parseInt(part));
+			} else {
+				int from = Integer.parseInt(part.substring(0, dash).trim());
+				int to = Integer.parseInt(part.substring(dash + 1).trim());
+				if (to < from)
+					throw new NumberFormatException("invalid range " + part);
+				for (int i = from; i <= to; i++)
+					values.add(i);
+			}
+		}
+		int result[] = new int[values.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = values.get(i);
+		return result;
+	}
+	
+	// "0.5,0.75" or "0.5:0.95:0.05" (from:to:step, both ends included)
+	public static double[] parseDoubles(String s) {
+		List<Double> values = new ArrayList<Double>();
+		for (String part : s.split(",")) {
+			String range[] = part.trim().split(":");
+			if (range.length == 1) {
+				values.add(Double.parseDouble(range[0]));
+			} else if (range.length == 3) {
+				double from = Double.parseDouble(range[0]);
+				double to = Double.parseDouble(range[1]);
+				double step = Double.parseDouble(range[2]);
+				if (step <= 0)
+					throw new NumberFormatException("invalid step " + step);
+				if (to < from)
+					throw new NumberFormatException("invalid range " + part);
+				long count = Math.round(Math.floor((to - from) / step + 1e-9));
+				for (long i = 0; i <= count; i++)
+					values.add(from + i * step);
+			} else {
+				throw new NumberFormatException("invalid range " + part);
+			}
+		}
+		double result[] = new double[values.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = values.get(i);
+		return result;
+	}
+	
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Read-only view of a trajectory file, mapped in memory: row t is found in O(1)
+// and read in place.
+//
+// Layout (little endian): a HEADER_SIZE bytes header
+//   magic "MECA", version, flags, rule, width, boundaries, update pattern (enum ordinals),
+//   alpha (double), seed (long), number of rows (long)
+// followed by fixed size records, one per step: the cells packed in longs (cell i is
+// bit i % 64 of long i / 64) and, when FLAG_OMEGA is set, one byte per cell with
+// omega / bigOmega quantised to 0-255.
+public class Trajectory implements Closeable {
+
+	static final int MAGIC = 0x4143454d; // "MECA"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 64;
+	static final int FLAG_OMEGA = 1;
+	
+	// records per mapped segment, a single MappedByteBuffer is limited to 2 GB
+	private static final long SEGMENT_SIZE = 1L << 30;
+	
+	private FileChannel channel;
+	private int flags;
+	private int ruleNumber;
+	private int width;
+	private Boundaries boundaries;
+	private UpdatePattern updatePattern;
+	private double alpha;
+	private long seed;
+	private long rows;
+	private int words;
+	private int recordSize;
+	private int segmentRows;
+	private MappedByteBuffer segments[];
+	
+	public Trajectory(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining())
+				if (channel.read(header) < 0)
+					throw new IOException("Truncated trajectory header");
+			header.flip();
+			if (header.getInt() != MAGIC)
+				throw new IOException("Not a trajectory file");
+			if (header.getInt() != VERSION)
+				throw new IOException("Unsupported trajectory version");
+			flags = header.getInt();
+			ruleNumber = header.getInt();
+			width = header.getInt();
+			boundaries = Boundaries.values()[header.getInt()];
+			updatePattern = UpdatePattern.values()[header.getInt()];
+			alpha = header.getDouble();
+			seed = header.getLong();
+			rows = header.getLong();
+			words = (width + 63) >> 6;
+			recordSize = recordSize(width, hasOmega());
+			if (HEADER_SIZE + rows * recordSize > channel.size())
+				throw new IOException("Truncated trajectory");
+			segmentRows = (int) Math.max(1, SEGMENT_SIZE / recordSize);
+			segments = new MappedByteBuffer[(int) ((rows + segmentRows - 1) / segmentRows)];
+			for (int s = 0; s < segments.length; s++) {
+				long first = (long) s * segmentRows;
+				long count = Math.min(segmentRows, rows - first);
+				segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * recordSize, count * recordSize);
+				segments[s].order(ByteOrder.LITTLE_ENDIAN);
+			}
+		} catch (IOException | RuntimeException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+	
+	static int recordSize(int width, boolean omega) {
+		return ((width + 63) >> 6) * 8 + (omega ? width : 0);
+	}
+	
+	public int getRuleNumber() {
+		return ruleNumber;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public Boundaries getBoundaries() {
+		return boundaries;
+	}
+
+	public UpdatePattern getUpdatePattern() {
+		return updatePattern;
+	}
+
+	public double getAlpha() {
+		return alpha;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public boolean hasOmega() {
+		return (flags & FLAG_OMEGA) != 0;
+	}
+	
+	// number of steps recorded
+	public long getRows() {
+		return rows;
+	}
+	
+	private ByteBuffer segment(long t) {
+		if (t < 0 || t >= rows)
+			throw new IndexOutOfBoundsException("Step " + t + " not in the trajectory");
+		return segments[(int) (t / segmentRows)];
+	}
+	
+	private int offset(long t) {
+		return (int) (t % segmentRows) * recordSize;
+	}
+	
+	// the packed cells of step t, a view on the mapped file
+	public LongBuffer getRow(long t) {
+		ByteBuffer segment = segment(t);
+		int offset = offset(t);
+		return segment.slice(offset, words * 8).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+	}
+	
+	public long getWord(long t, int w) {
+		return segment(t).getLong(offset(t) + w * 8);
+	}
+	
+	public boolean getState(long t, int i) {
+		return (getWord(t, i >> 6) >>> i & 1) != 0;
+	}
+	
+	public int getOnes(long t) {
+		ByteBuffer segment = segment(t);
+		int offset = offset(t);
+		int c = 0;
+		for (int w = 0; w < words; w++)
+			c += Long.bitCount(segment.getLong(offset + w * 8));
+		return c;
+	}
+	
+	public double getDensity(long t) {
+		return getOnes(t) * 1d / width;
+	}
+	
+	// omega / bigOmega of cell i at step t, quantised to 1/255
+	public double getOmega(long t, int i) {
+		if (!hasOmega())
+			throw new IllegalStateException("The trajectory has no omega");
+		return (segment(t).get(offset(t) + words * 8 + i) & 0xff) / 255d;
+	}
+	
+	public void close() throws IOException {
+		segments = null;
+		channel.close();
+	}
+	
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Appends the rows of a run to a trajectory file, see Trajectory for the layout.
+// The number of rows in the header is written on close.
+public class TrajectoryWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 20;
+	
+	private FileChannel channel;
+	private Configuration configuration;
+	private boolean omega;
+	private int width;
+	private int words;
+	private ByteBuffer buffer;
+	private long rows;
+	
+	public TrajectoryWriter(Path file, Configuration configuration, boolean omega) throws IOException {
+		this.configuration = configuration;
+		this.omega = omega;
+		this.width = configuration.getWidth();
+		this.words = (width + 63) >> 6;
+		int recordSize = Trajectory.recordSize(width, omega);
+		buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, recordSize)).order(ByteOrder.LITTLE_ENDIAN);
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		channel.position(Trajectory.HEADER_SIZE);
+	}
+	
+	public long getRows() {
+		return rows;
+	}
+	
+	public void append(Lattice lattice) throws IOException {
+		if (lattice.getSize() != width)
+			throw new IllegalArgumentException("Row width is not " + width);
+		if (buffer.remaining() < Trajectory.recordSize(width, omega))
+			flush();
+		if (lattice instanceof BitRow) {
+			BitRow row = (BitRow) lattice;
+			for (int w = 0; w < words; w++)
+				buffer.putLong(row.getWord(w));
+		} else {
+			for (int w = 0; w < words; w++) {
+				long word = 0;
+				for (int i = w << 6, end = Math.min(width, i + 64); i < end; i++)
+					if (lattice.getValue(i))
+						word |= 1L << i;
+				buffer.putLong(word);
+			}
+		}
+		if (omega) {
+			for (int i = 0; i < width; i++)
+				buffer.put((byte) quantise(lattice, i));
+		}
+		rows++;
+	}
+	
+	private static int quantise(Lattice lattice, int i) {
+		double c;
+		if (lattice instanceof ArrayRow) {
+			ArrayRow row = (ArrayRow) lattice;
+			c = row.getOmega(i) / row.getBigOmega();
+		} else if (lattice instanceof Row) {
+			Cell cell = ((Row) lattice).getCell(i);
+			c = cell.getOmega() / cell.getBigOmega();
+		} else if (lattice instanceof ChunkedRow) {
+			Cell cell = ((ChunkedRow) lattice).getCell(i);
+			c = cell.getOmega() / cell.getBigOmega();
+		} else {
+			// without memory omega / bigOmega is the state
+			c = lattice.getValue(i) ? 1 : 0;
+		}
+		return c > 0 ? (int) (Math.min(c, 1) * 255 + 0.5) : 0;
+	}
+	
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+	
+	public void close() throws IOException {
+		try {
+			flush();
+			ByteBuffer header = ByteBuffer.allocate(Trajectory.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(Trajectory.MAGIC);
+			header.putInt(Trajectory.VERSION);
+			header.putInt(omega ? Trajectory.FLAG_OMEGA : 0);
+			header.putInt(configuration.getRuleNumber());
+			header.putInt(width);
+			header.putInt(configuration.getBoundaries().ordinal());
+			header.putInt(configuration.getUpdatePattern().ordinal());
+			header.putDouble(configuration.getAlpha());
+			header.putLong(configuration.getSeed());
+			header.putLong(rows);
+			header.clear();
+			channel.position(0);
+			while (header.hasRemaining())
+				channel.write(header);
+		} finally {
+			channel.close();
+		}
+	}
+	
+}
@@ -28,16 +28,34 @@ public enum UpdatePattern {
 	synchronous, // all cells are updated in parallel at each time step
 	rasRandomIndependent, // at each time step, a cell to update is chosen at random
 	rasRandomIndependent10, // at each time step, 10 cells to update are chosen at random
-	rasRandomIndependent60, // at each time step, 100 cells to update are chosen at random
+	rasRandomIndependent60, // at each time step, 60 cells to update are chosen at random
 	rasRandomIndependent100, // at each time step, 100 cells to update are chosen at random
 	rasRandomIndependent500, // at each time step, 500 cells to update are chosen at random
 	rasRandomOrder, // at each time step, all nodes are updated, but in random order
-	oasCyclic, 	// at each time step a cell is chosen according to a xed update order,  which was decided at random during initialization phase
-	oasEqClocked10,
+	oasCyclic, 	// at each time step a cell is chosen according to a fixed update order,  which was decided at random during initialization phase
+	oasEqClocked10, // every cell has a random clock tick out of 10, cells sharing a tick are updated together
 	oasEqClocked60,
 	oasEqClocked100,
 	oasEqClocked500;
 	
+	// cells updated in one time step of a row of the given size
+	public int getCellsPerStep(int size) {
+		switch (this) {
+		case rasRandomIndependent:
+			return 1;
+		case rasRandomIndependent10:
+			return 10;
+		case rasRandomIndependent60:
+			return 60;
+		case rasRandomIndependent100:
+			return 100;
+		case rasRandomIndependent500:
+			return 500;
+		default:
+			return size;
+		}
+	}
+	
 	public static UpdatePattern getUpdatePattern(String updatePatternAsString) throws IllegalArgumentException {
 		for (UpdatePattern updatePattern : EnumSet.allOf(UpdatePattern.class)) {
 			if (updatePattern.toString().equals(updatePatternAsString))
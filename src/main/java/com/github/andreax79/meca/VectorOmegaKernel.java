@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Vector API version of the memory update, one lane per cell; loaded by
+// OmegaKernel.getInstance() only when the jdk.incubator.vector module is present
+class VectorOmegaKernel extends OmegaKernel {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+	
+	public void update(Rule rule, double alpha, double bigOmega, boolean state[], double omega[], int d, boolean targetState[], double targetOmega[], int from, int to) {
+		int n = rule.getNumber();
+		int bound = from + SPECIES.loopBound(to - from);
+		int i = from;
+		for (; i < bound; i += SPECIES.length()) {
+			VectorMask<Double> self = VectorMask.fromArray(SPECIES, state, i);
+			VectorMask<Double> neighbor = VectorMask.fromArray(SPECIES, state, i + d);
+			// rule n as the sum of minterms of its truth table, see Rule.compute
+			VectorMask<Double> s = SPECIES.maskAll(false);
+			if ((n & 1) != 0)
+				s = s.or(self.not().andNot(neighbor));
+			if ((n & 2) != 0)
+				s = s.or(neighbor.andNot(self));
+			if ((n & 4) != 0)
+				s = s.or(self.andNot(neighbor));
+			if ((n & 8) != 0)
+				s = s.or(self.and(neighbor));
+			DoubleVector o = DoubleVector.fromArray(SPECIES, omega, i).mul(alpha).add(1.0, s);
+			VectorMask<Double> half = o.compare(VectorOperators.EQ, 0.5);
+			VectorMask<Double> above = o.div(bigOmega).compare(VectorOperators.GT, 0.5);
+			above.andNot(half).or(s.and(half)).intoArray(targetState, i);
+			o.intoArray(targetOmega, i);
+		}
+		scalarUpdate(rule, alpha, bigOmega, state, omega, d, targetState, targetOmega, i, to);
+	}
+	
+	public String getName() {
+		return "vector " + SPECIES;
+	}
+	
+}
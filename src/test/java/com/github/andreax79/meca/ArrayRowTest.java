@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import junit.framework.TestCase;
+
+public class ArrayRowTest extends TestCase {
+
+	private static final double alphas[] = { 0, 0.5, 0.75, 0.9 };
+
+	public void testSynchronousSameRowsAsRow() {
+		for (int n = 0; n < 16; n++) {
+			Rule rule = new Rule(n);
+			for (Boundaries boundaries : Boundaries.values()) {
+				for (double alpha : alphas) {
+					Row row = new Row(37, rule, boundaries, UpdatePattern.synchronous, alpha);
+					ArrayRow arrayRow = new ArrayRow(row);
+					for (int t = 0; t < 60; t++) {
+						String message = rule + " " + boundaries + " alpha " + alpha + " t " + t;
+						assertEquals(message, row.toString(), arrayRow.toString());
+						for (int i = 0; i < row.getSize(); i++)
+							assertEquals(message, row.getCell(i).getOmega(), arrayRow.getOmega(i), 0);
+						assertEquals(message, row.getValue(), arrayRow.getValue(), 1e-9);
+						row = row.next();
+						arrayRow = arrayRow.next();
+					}
+				}
+			}
+		}
+	}
+
+	public void testParallelSameRowsAsSequential() {
+		for (Boundaries boundaries : Boundaries.values()) {
+			for (int size : new int[] { 1, 2, 5, 1000 }) {
+				Row row = new Row(size, new Rule(9), boundaries, UpdatePattern.synchronous, 0.6);
+				ArrayRow sequential = new ArrayRow(row);
+				ArrayRow parallel = new ArrayRow(row);
+				parallel.setThreads(3);
+				sequential.advance(41);
+				parallel.advance(41);
+				assertEquals(sequential.toString(), parallel.toString());
+				for (int i = 0; i < size; i++)
+					assertEquals(sequential.getOmega(i), parallel.getOmega(i), 0);
+				parallel.setThreads(1);
+			}
+		}
+	}
+
+	public void testSeededSameRowsAsRow() {
+		for (UpdatePattern updatePattern : UpdatePattern.values()) {
+			for (Boundaries boundaries : Boundaries.values()) {
+				// the small widths have every cell next to the ghost cells
+				for (int size : new int[] { 1, 2, 3, 40 }) {
+					Row row = new Row(size, new Rule(6), boundaries, updatePattern, (String) null, 0.5, new RandomSource(11));
+					ArrayRow arrayRow = new ArrayRow(size, new Rule(6), boundaries, updatePattern, (String) null, 0.5, new RandomSource(11));
+					for (int t = 0; t < 50; t++) {
+						assertEquals(updatePattern + " " + boundaries + " " + size + " t " + t, row.toString(), arrayRow.toString());
+						row = row.next();
+						arrayRow = arrayRow.next();
+					}
+				}
+			}
+		}
+	}
+
+	public void testAsynchronousPatterns() {
+		for (UpdatePattern updatePattern : UpdatePattern.values()) {
+			ArrayRow row = new ArrayRow(50, new Rule(6), Boundaries.periodic, updatePattern, "S", 0.5);
+			for (int t = 0; t < 20; t++)
+				row = row.next();
+			assertEquals(20, row.getT());
+			assertTrue(row.getOnes() >= 0 && row.getOnes() <= row.getSize());
+		}
+	}
+
+}
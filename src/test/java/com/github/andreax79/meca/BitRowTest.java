@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import junit.framework.TestCase;
+
+public class BitRowTest extends TestCase {
+
+	private static final int sizes[] = { 2, 3, 17, 63, 64, 65, 128, 200 };
+
+	public void testSameRowsAsRow() {
+		for (int n = 0; n < 16; n++) {
+			Rule rule = new Rule(n);
+			for (Boundaries boundaries : Boundaries.values()) {
+				for (int size : sizes) {
+					Row row = new Row(size, rule, boundaries, UpdatePattern.synchronous, 0);
+					BitRow bitRow = new BitRow(row);
+					for (int t = 0; t < 100; t++) {
+						assertEquals(rule + " " + boundaries + " size " + size + " t " + t, row.toString(), bitRow.toString());
+						assertEquals(row.getOnes(), bitRow.getOnes());
+						row = row.next();
+						bitRow = bitRow.next();
+					}
+				}
+			}
+		}
+	}
+
+	public void testParallelSameRowsAsSequential() {
+		for (Boundaries boundaries : Boundaries.values()) {
+			for (int size : new int[] { 1, 64, 65, 1000 }) {
+				Row row = new Row(size, new Rule(6), boundaries, UpdatePattern.synchronous, 0);
+				BitRow sequential = new BitRow(row);
+				BitRow parallel = new BitRow(row);
+				parallel.setThreads(4);
+				for (int t = 0; t < 20; t++) {
+					sequential.step();
+					parallel.step();
+					assertEquals(sequential, parallel);
+				}
+				sequential.advance(50);
+				parallel.advance(50);
+				assertEquals(sequential, parallel);
+				assertEquals(sequential.getT(), parallel.getT());
+				parallel.setThreads(1);
+			}
+		}
+	}
+
+	public void testWordRuleMatchesCellRule() {
+		for (int n = 0; n < 16; n++) {
+			Rule rule = new Rule(n);
+			long word = rule.compute(0xCL, 0xAL); // self = 1100, neighbor = 1010
+			for (int i = 0; i < 4; i++)
+				assertEquals(rule.compute((0xC >> i & 1) == 1, (0xA >> i & 1) == 1), (word >>> i & 1) == 1);
+		}
+	}
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class CensusTest extends TestCase {
+
+	public void testMapMatchesBitRow() {
+		for (int n = 0; n < 16; n++) {
+			for (Boundaries boundaries : Boundaries.values()) {
+				for (int size = 1; size <= 7; size++) {
+					Census census = new Census(size, new Rule(n), boundaries);
+					for (int x = 0; x < 1 << size; x++) {
+						BitRow row = new BitRow(size, new Rule(n), boundaries);
+						for (int i = 0; i < size; i++)
+							row.setValue(i, (x >>> i & 1) == 1);
+						row.advance(2);
+						int y = 0;
+						for (int i = 0; i < size; i++)
+							if (row.getValue(i))
+								y |= 1 << i;
+						assertEquals(y, census.map(x));
+					}
+				}
+			}
+		}
+	}
+
+	public void testSameResultsAsBruteForce() {
+		for (int n = 0; n < 16; n++) {
+			for (Boundaries boundaries : Boundaries.values()) {
+				int size = 9;
+				int states = 1 << size;
+				Census census = new Census(size, new Rule(n), boundaries);
+				census.setParallelism(2);
+				census.run();
+				
+				boolean image[] = new boolean[states];
+				Set<Integer> cycles = new HashSet<Integer>();
+				long transients[] = new long[states + 1];
+				for (int x = 0; x < states; x++) {
+					image[census.map(x)] = true;
+					// walk until a state repeats, the cycle is identified by its smallest state
+					int seen[] = new int[states];
+					int y = x;
+					int k = 1;
+					while (seen[y] == 0) {
+						seen[y] = k++;
+						y = census.map(y);
+					}
+					int min = y;
+					for (int z = census.map(y); z != y; z = census.map(z))
+						min = Math.min(min, z);
+					cycles.add(min);
+					transients[seen[y] - 1]++;
+				}
+				int gardenOfEden = 0;
+				for (int x = 0; x < states; x++)
+					if (!image[x])
+						gardenOfEden++;
+				
+				assertEquals(gardenOfEden, census.getGardenOfEden());
+				assertEquals(cycles.size(), census.getAttractors());
+				long basins = 0;
+				for (int a = 0; a < census.getAttractors(); a++)
+					basins += census.getBasin(a);
+				assertEquals(states, basins);
+				long counted[] = census.getTransients();
+				for (int d = 0; d < counted.length; d++)
+					assertEquals(transients[d], counted[d]);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import junit.framework.TestCase;
+
+public class CheckpointTest extends TestCase {
+
+	public void testResumeIsBitExact() throws IOException {
+		File file = File.createTempFile("meca", ".checkpoint");
+		try {
+			UpdatePattern updatePatterns[] = { UpdatePattern.synchronous, UpdatePattern.rasRandomIndependent10,
+					UpdatePattern.rasRandomOrder, UpdatePattern.oasCyclic, UpdatePattern.oasEqClocked10 };
+			for (UpdatePattern updatePattern : updatePatterns) {
+				for (double alpha : new double[] { 0, 0.7 }) {
+					Configuration configuration = new Configuration(6, 150, Boundaries.periodic, updatePattern, 300, alpha, null, 5);
+					Simulation full = new Simulation(configuration, Output.noOutput, ColorScheme.noColor);
+					// the last checkpoint is taken at step 200, then the run goes on to 300
+					full.setCheckpoint(file.toPath(), 100, 0);
+					Stats expected = full.run();
+					
+					Checkpoint checkpoint = Checkpoint.read(file.toPath());
+					assertEquals(200, checkpoint.getT());
+					assertEquals(configuration, checkpoint.getConfiguration());
+					Simulation resumed = new Simulation(checkpoint.getConfiguration(), Output.noOutput, ColorScheme.noColor);
+					resumed.setResume(checkpoint);
+					Stats stats = resumed.run();
+					
+					assertEquals(expected.getCount(), stats.getCount());
+					assertEquals(expected.getMeans(), stats.getMeans(), 0);
+					assertEquals(expected.getVariance(), stats.getVariance(), 0);
+					assertEquals(expected.getKurtosis(), stats.getKurtosis(), 0);
+					assertEquals(expected.getError(), stats.getError(), 0);
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static byte[] serialize(Object object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(object);
+		}
+		return bytes.toByteArray();
+	}
+	
+	private static Lattice deserialize(byte data[]) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+			return (Lattice) in.readObject();
+		}
+	}
+	
+	public void testEveryEngineContinuesAfterRestore() throws IOException, ClassNotFoundException {
+		for (double alpha : new double[] { 0, 0.6 }) {
+			for (UpdatePattern updatePattern : new UpdatePattern[] { UpdatePattern.synchronous, UpdatePattern.rasRandomIndependent10, UpdatePattern.oasEqClocked10 }) {
+				Lattice rows[] = {
+					new Row(130, new Rule(6), Boundaries.fixed, updatePattern, (String) null, alpha, new RandomSource(3)),
+					new ArrayRow(130, new Rule(6), Boundaries.fixed, updatePattern, (String) null, alpha, new RandomSource(3)),
+					new ChunkedRow(130, new Rule(6), Boundaries.fixed, updatePattern, null, alpha, new RandomSource(3)),
+				};
+				for (Lattice row : rows) {
+					for (int t = 0; t < 20; t++)
+						row = row.next();
+					Lattice restored = deserialize(serialize(row));
+					for (int t = 0; t < 30; t++) {
+						String message = row.getClass().getSimpleName() + " " + updatePattern + " " + alpha + " t " + t;
+						assertEquals(message, row.toString(), restored.toString());
+						assertEquals(message, row.getT(), restored.getT());
+						assertEquals(message, row.getValue(), restored.getValue(), 0);
+						row = row.next();
+						restored = restored.next();
+					}
+				}
+			}
+		}
+		BitRow row = new BitRow(new ArrayRow(200, new Rule(9), Boundaries.periodic, UpdatePattern.synchronous, (String) null, 0, new RandomSource(3)));
+		row.advance(7);
+		BitRow restored = (BitRow) deserialize(serialize(row));
+		row.advance(20);
+		restored.advance(20);
+		assertEquals(row, restored);
+	}
+	
+	public void testCompactSnapshots() throws IOException {
+		// the states packed and the omegas, no scratch buffers and no object per cell
+		int size = 100000;
+		for (double alpha : new double[] { 0, 0.6 }) {
+			// plus the block headers of the stream, 5 bytes per KB
+			int bound = (size / 8 + (alpha != 0 ? 8 * size : 0)) * 101 / 100 + 4096;
+			assertTrue(serialize(new ArrayRow(size, new Rule(6), Boundaries.periodic, UpdatePattern.synchronous, (String) null, alpha, new RandomSource(1))).length < bound);
+			assertTrue(serialize(new Row(size, new Rule(6), Boundaries.periodic, UpdatePattern.synchronous, (String) null, alpha, new RandomSource(1))).length < bound + size / 4);
+			assertTrue(serialize(new ChunkedRow(size, new Rule(6), Boundaries.periodic, UpdatePattern.rasRandomIndependent, null, alpha, new RandomSource(1))).length < bound + size / 4);
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+public class ChunkedRowTest extends TestCase {
+
+	public void testSeededSameRowsAsRow() {
+		for (UpdatePattern updatePattern : UpdatePattern.values()) {
+			for (Boundaries boundaries : Boundaries.values()) {
+				// one leaf, a partial last leaf, two levels of nodes
+				for (int size : new int[] { 1, 3, 64, 65, 2100 }) {
+					Row row = new Row(size, new Rule(6), boundaries, updatePattern, (String) null, 0.5, new RandomSource(7));
+					ChunkedRow chunkedRow = new ChunkedRow(size, new Rule(6), boundaries, updatePattern, null, 0.5, new RandomSource(7));
+					for (int t = 0; t < 30; t++) {
+						String message = updatePattern + " " + boundaries + " " + size + " t " + t;
+						assertEquals(message, row.toString(), chunkedRow.toString());
+						assertEquals(message, row.getOnes(), chunkedRow.getOnes());
+						assertEquals(message, row.getValue(), chunkedRow.getValue(), 1e-9);
+						row = row.next();
+						chunkedRow = chunkedRow.next();
+					}
+				}
+			}
+		}
+	}
+
+	public void testPersistent() {
+		ChunkedRow row = new ChunkedRow(5000, new Rule(6), Boundaries.periodic, UpdatePattern.rasRandomIndependent100, "S", 0.6, new RandomSource(3));
+		String before = row.toString();
+		int ones = row.getOnes();
+		double value = row.getValue();
+		ChunkedRow next = row;
+		for (int t = 0; t < 100; t++)
+			next = next.next();
+		assertEquals(100, next.getT());
+		assertFalse(before.equals(next.toString()));
+		// the older generations share the untouched chunks but don't see the changes
+		assertEquals(before, row.toString());
+		assertEquals(ones, row.getOnes());
+		assertEquals(value, row.getValue(), 0);
+	}
+
+	public void testSimulationSameStats() throws IOException {
+		Configuration configuration = new Configuration(6, 2000, Boundaries.reflective, UpdatePattern.rasRandomIndependent, 3000, 0.5, null, 5);
+		Stats chunked = new Simulation(configuration, Output.noOutput, ColorScheme.noColor).run();
+		Lattice row = new Row(2000, new Rule(6), Boundaries.reflective, UpdatePattern.rasRandomIndependent, (String) null, 0.5, new RandomSource(5));
+		Stats stats = new Stats();
+		for (int t = 0; t < 3000; t++) {
+			if (t >= Simulation.START_MEANS_FROM_STEP)
+				stats.add(row.getDensity());
+			row = row.next();
+		}
+		assertEquals(stats.getMeans(), chunked.getMeans(), 0);
+		assertEquals(stats.getVariance(), chunked.getVariance(), 0);
+	}
+
+}
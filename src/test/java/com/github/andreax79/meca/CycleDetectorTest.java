@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class CycleDetectorTest extends TestCase {
+
+	public void testPeriodAndTransientMatchBruteForce() {
+		for (int n = 0; n < 16; n++) {
+			for (Boundaries boundaries : Boundaries.values()) {
+				BitRow row = new BitRow(new Row(12, new Rule(n), boundaries, UpdatePattern.synchronous, "010011010111", 0));
+				BitRow initial = new BitRow(row);
+				CycleDetector detector = new CycleDetector();
+				Map<String, Integer> seen = new HashMap<String, Integer>();
+				int t = 0;
+				while (!detector.offer(row)) {
+					seen.put(row + ":" + (row.getT() % 2), t);
+					row.step();
+					t++;
+				}
+				// the first repeated state
+				BitRow brute = new BitRow(initial);
+				seen.clear();
+				int first = 0;
+				String key;
+				while (!seen.containsKey(key = brute + ":" + (brute.getT() % 2))) {
+					seen.put(key, first++);
+					brute.step();
+				}
+				assertEquals(first - seen.get(key), detector.getPeriod());
+				assertEquals((long) seen.get(key), CycleDetector.findTransient(initial, detector.getPeriod()));
+			}
+		}
+	}
+
+	public void testEarlyStopGivesSameStats() throws Exception {
+		int detected = 0;
+		for (int n = 0; n < 16; n++) {
+			for (Boundaries boundaries : Boundaries.values()) {
+				Configuration configuration = new Configuration(n, 40, boundaries, UpdatePattern.synchronous, 1000, 0, null, 17);
+				Simulation detecting = new Simulation(configuration, Output.noOutput, ColorScheme.noColor);
+				Simulation full = new Simulation(configuration, Output.noOutput, ColorScheme.noColor);
+				full.setDetectCycles(false);
+				Stats a = detecting.run();
+				Stats b = full.run();
+				if (detecting.getPeriod() > 0)
+					detected++;
+				assertEquals(b.getCount(), a.getCount());
+				assertEquals(b.getMeans(), a.getMeans(), 1e-9);
+				assertEquals(b.getVariance(), a.getVariance(), 1e-9);
+				assertEquals(b.getMin(), a.getMin(), 0);
+				assertEquals(b.getMax(), a.getMax(), 0);
+			}
+		}
+		assertTrue(detected > 0);
+	}
+
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import junit.framework.TestCase;
+
+public class DamageRowTest extends TestCase {
+
+	public void testSameRowsAsTwoArrayRows() {
+		for (UpdatePattern updatePattern : UpdatePattern.values()) {
+			for (Boundaries boundaries : Boundaries.values()) {
+				for (double alpha : new double[] { 0, 0.6 }) {
+					// one word, a partial last word, damage starting on the edges and in the middle
+					for (int size : new int[] { 1, 5, 64, 300 }) {
+						for (int flipped : new int[] { 0, size / 2, size - 1 }) {
+							ArrayRow row = new ArrayRow(size, new Rule(6), boundaries, updatePattern, (String) null, alpha, new RandomSource(11));
+							ArrayRow copy = new ArrayRow(size, new Rule(6), boundaries, updatePattern, (String) null, alpha, new RandomSource(11));
+							copy.setValue(flipped, !copy.getValue(flipped));
+							DamageRow pair = new DamageRow(new ArrayRow(size, new Rule(6), boundaries, updatePattern, (String) null, alpha, new RandomSource(11)), flipped);
+							for (int t = 0; t < 40; t++) {
+								String message = updatePattern + " " + boundaries + " " + alpha + " " + size + " " + flipped + " t " + t;
+								int distance = 0;
+								for (int i = 0; i < size; i++) {
+									assertEquals(message, row.getValue(i), pair.getValue(i));
+									assertEquals(message, copy.getValue(i), pair.getCopyValue(i));
+									if (row.getValue(i) != copy.getValue(i))
+										distance++;
+								}
+								assertEquals(message, distance, pair.getDistance());
+								assertEquals(message, spread(row, copy), pair.getSpread());
+								row.next();
+								copy.next();
+								pair.next();
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	// the shortest interval, or arc when periodic, holding every damaged cell: the row minus the longest run of
+	// undamaged cells (around the end too when periodic)
+	private static int spread(ArrayRow row, ArrayRow copy) {
+		int size = row.getSize();
+		int first = -1;
+		int last = -1;
+		int gap = 0;
+		for (int i = 0; i < size; i++) {
+			if (row.getValue(i) == copy.getValue(i))
+				continue;
+			if (first < 0)
+				first = i;
+			else
+				gap = Math.max(gap, i - last - 1);
+			last = i;
+		}
+		if (first < 0)
+			return 0;
+		if (row.getBoundaries() != Boundaries.periodic)
+			return last - first + 1;
+		return size - Math.max(gap, size - 1 - last + first);
+	}
+
+	public void testSpreadAndVelocity() {
+		// rule 6 without memory: the damage of a single cell spreads one cell per step
+		DamageRow pair = new DamageRow(new Configuration(6, 1000, Boundaries.periodic, UpdatePattern.synchronous, 0, 0, "S", 1), 500);
+		assertEquals(1, pair.getDistance());
+		assertEquals(1, pair.getSpread());
+		assertEquals(0d, pair.getVelocity());
+		Stats stats = pair.run(100);
+		assertEquals(100, stats.getCount());
+		assertEquals(100, pair.getT());
+		assertTrue(pair.getDistance() > 1);
+		assertEquals(101, pair.getSpread());
+		assertEquals(1d, pair.getVelocity(), 0);
+		// healed damage
+		pair = new DamageRow(new Configuration(0, 100, Boundaries.periodic, UpdatePattern.synchronous, 0, 0, null, 1), 10);
+		pair.next();
+		assertEquals(0, pair.getDistance());
+		assertEquals(0, pair.getSpread());
+		assertEquals(0d, pair.getVelocity());
+	}
+
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+public class EnsembleTest extends TestCase {
+
+	private static Configuration configuration() {
+		return new Configuration(6, 64, Boundaries.periodic, UpdatePattern.rasRandomOrder, 200, 0.5, null, 42);
+	}
+
+	public void testQuantiles() {
+		assertEquals(1.959964, Ensemble.normalQuantile(0.975), 5e-4);
+		assertEquals(-1.644854, Ensemble.normalQuantile(0.05), 5e-4);
+		assertEquals(2.228139, Ensemble.studentQuantile(0.975, 10), 5e-3);
+		assertEquals(2.042272, Ensemble.studentQuantile(0.975, 30), 1e-3);
+	}
+
+	public void testSameResultWithAnyParallelism() throws IOException {
+		Ensemble sequential = new Ensemble(configuration());
+		sequential.setParallelism(1);
+		sequential.setReplicas(4, 12);
+		sequential.setTargetWidth(0);
+		sequential.run();
+		Ensemble parallel = new Ensemble(configuration());
+		parallel.setParallelism(3);
+		parallel.setReplicas(4, 12);
+		parallel.setTargetWidth(0);
+		parallel.run();
+		assertEquals(12, sequential.getReplicas());
+		assertEquals(12, parallel.getReplicas());
+		assertEquals(sequential.getMeans(), parallel.getMeans(), 1e-15);
+		assertEquals(sequential.getStats().getCount(), parallel.getStats().getCount());
+	}
+
+	public void testStopsAtTargetWidth() throws IOException {
+		Ensemble ensemble = new Ensemble(configuration());
+		ensemble.setParallelism(2);
+		ensemble.setReplicas(4, 500);
+		ensemble.setTargetWidth(0.02);
+		ensemble.run();
+		assertTrue(ensemble.getReplicas() < 500);
+		assertTrue(ensemble.getHalfWidth() * 2 <= 0.02);
+		assertEquals(ensemble.getStats().getMeans(), ensemble.getMeans(), 1e-9);
+	}
+
+	public void testSlicedReplicasMatchSimulations() throws IOException {
+		// the sliced replicas see the same streams as single runs, the second one ends in a joint cycle
+		for (int parallelism : new int[] { 1, 3 }) {
+			// with 3 workers the 70 replicas are split below a word
+			assertSameAsSimulations(new Configuration(6, 100, Boundaries.reflective, UpdatePattern.synchronous, 300, 0, null, 5), parallelism);
+			assertSameAsSimulations(new Configuration(2, 20, Boundaries.periodic, UpdatePattern.synchronous, 5000, 0, null, 6), parallelism);
+		}
+	}
+
+	private void assertSameAsSimulations(Configuration configuration, int parallelism) throws IOException {
+		Ensemble ensemble = new Ensemble(configuration);
+		ensemble.setParallelism(parallelism);
+		ensemble.setReplicas(70, 70);
+		ensemble.run();
+		assertEquals(70, ensemble.getReplicas());
+		RandomSource streams = new RandomSource(configuration.getSeed());
+		Stats means = new Stats();
+		Stats all = new Stats();
+		for (int r = 0; r < 70; r++) {
+			Simulation simulation = new Simulation(configuration, Output.noOutput, ColorScheme.noColor);
+			simulation.setRandom(streams.split());
+			Stats stats = simulation.run();
+			means.add(stats.getMeans());
+			all.merge(stats);
+		}
+		assertEquals(means.getMeans(), ensemble.getMeans(), 1e-12);
+		assertEquals(means.getVariance(), ensemble.getReplicaMeans().getVariance(), 1e-12);
+		assertEquals(all.getCount(), ensemble.getStats().getCount());
+		assertEquals(all.getVariance(), ensemble.getStats().getVariance(), 1e-12);
+	}
+
+	public void testAdaptiveStopDoesNotDependOnParallelism() throws IOException {
+		// the stop after a few rounds lands on the same replica with any number of workers
+		assertSameStop(configuration(), 0.004);
+		assertSameStop(new Configuration(6, 50, Boundaries.periodic, UpdatePattern.synchronous, 100, 0, null, 3), 0.002);
+	}
+
+	private void assertSameStop(Configuration configuration, double targetWidth) throws IOException {
+		Ensemble sequential = null;
+		for (int parallelism : new int[] { 1, 4, 16 }) {
+			Ensemble ensemble = new Ensemble(configuration);
+			ensemble.setParallelism(parallelism);
+			ensemble.setReplicas(4, 1000);
+			ensemble.setTargetWidth(targetWidth);
+			ensemble.run();
+			if (sequential == null) {
+				sequential = ensemble;
+				assertTrue(ensemble.getReplicas() > ensemble.getMinReplicas());
+				assertTrue(ensemble.getReplicas() < ensemble.getMaxReplicas());
+				continue;
+			}
+			assertEquals(sequential.getReplicas(), ensemble.getReplicas());
+			assertEquals(sequential.getMeans(), ensemble.getMeans(), 0);
+			assertEquals(sequential.getHalfWidth(), ensemble.getHalfWidth(), 0);
+			assertEquals(sequential.getStats().getCount(), ensemble.getStats().getCount());
+			assertEquals(sequential.getStats().getVariance(), ensemble.getStats().getVariance(), 0);
+		}
+	}
+
+	public void testSlicedRoundsAreCapped() throws IOException {
+		// a narrow target with many workers: the rounds stay small enough for the stop to act before the budget is spent
+		Configuration configuration = new Configuration(6, 50, Boundaries.periodic, UpdatePattern.synchronous, 100, 0, null, 3);
+		Ensemble ensemble = new Ensemble(configuration);
+		ensemble.setParallelism(16);
+		ensemble.setReplicas(4, 1000);
+		ensemble.setTargetWidth(0.002);
+		ensemble.run();
+		assertTrue(ensemble.getReplicas() > SlicedRow.REPLICAS);
+		assertTrue(ensemble.getReplicas() < 1000);
+		assertTrue(ensemble.getHalfWidth() * 2 <= 0.002);
+		// a larger first round asked for is kept
+		ensemble.setReplicas(600, 1000);
+		ensemble.setTargetWidth(1);
+		ensemble.run();
+		assertEquals(640, ensemble.getReplicas());
+	}
+
+	public void testReplicasAreIndependent() throws IOException {
+		Ensemble ensemble = new Ensemble(configuration());
+		ensemble.setReplicas(4, 4);
+		ensemble.run();
+		assertTrue(ensemble.getReplicaMeans().getVariance() > 0);
+	}
+
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import junit.framework.TestCase;
+
+public class MacroRowTest extends TestCase {
+
+	private static final int jumps[] = { 1, 2, 3, 1, 5, 16, 37, 64, 200, 1 };
+
+	public void testSameRowsAsBitRow() {
+		for (int n = 0; n < 16; n++) {
+			Rule rule = new Rule(n);
+			for (int size : new int[] { 32, 64, 256 }) {
+				BitRow bitRow = new BitRow(new ArrayRow(size, rule, Boundaries.periodic, UpdatePattern.synchronous, 0, new RandomSource(n * 1000 + size)));
+				MacroRow macroRow = new MacroRow(bitRow);
+				for (int jump : jumps) {
+					bitRow.advance(jump);
+					macroRow.advance(jump);
+					assertEquals(rule + " size " + size + " t " + bitRow.getT(), bitRow.toString(), macroRow.toString());
+					assertEquals(bitRow.getOnes(), macroRow.getOnes());
+					assertEquals(bitRow.getT(), macroRow.getT());
+				}
+			}
+		}
+	}
+
+	public void testSingleSeedPatterns() {
+		for (String pattern : new String[] { "S", "SI", "0110111" }) {
+			for (int n = 0; n < 16; n++) {
+				Rule rule = new Rule(n);
+				BitRow bitRow = new BitRow(new ArrayRow(1024, rule, Boundaries.periodic, UpdatePattern.synchronous, pattern, 0));
+				MacroRow macroRow = new MacroRow(1024, rule, pattern, new RandomSource());
+				assertEquals(bitRow.toString(), macroRow.toString());
+				bitRow.advance(1001);
+				macroRow.advance(1001);
+				assertEquals(pattern + " " + rule, bitRow.toString(), macroRow.toString());
+			}
+		}
+	}
+
+	public void testSameRandomRowAsArrayRow() {
+		ArrayRow arrayRow = new ArrayRow(128, new Rule(6), Boundaries.periodic, UpdatePattern.synchronous, 0, new RandomSource(7));
+		MacroRow macroRow = new MacroRow(128, new Rule(6), null, new RandomSource(7));
+		assertEquals(arrayRow.toString(), macroRow.toString());
+	}
+
+	public void testEvictionKeepsResults() {
+		BitRow bitRow = new BitRow(new ArrayRow(512, new Rule(6), Boundaries.periodic, UpdatePattern.synchronous, 0, new RandomSource(3)));
+		MacroRow macroRow = new MacroRow(bitRow);
+		macroRow.setCacheSize(16);
+		for (int jump : jumps) {
+			bitRow.advance(jump);
+			macroRow.advance(jump);
+			assertEquals(bitRow.toString(), macroRow.toString());
+		}
+		assertTrue(macroRow.getCachedNodes() <= 16);
+		assertTrue(macroRow.getCachedResults() <= 16);
+	}
+
+	public void testLongJumpOnWideRow() {
+		// one cell on 2^30 cells: rule 6 keeps the diagram self-similar
+		MacroRow macroRow = new MacroRow(1 << 30, new Rule(6), "S", new RandomSource());
+		macroRow.advance(1 << 20);
+		assertTrue(macroRow.getOnes() > 0);
+		assertEquals(1 << 30, macroRow.getSize());
+	}
+
+	public void testInvalidWidth() {
+		try {
+			new MacroRow(100, new Rule(6), "S", new RandomSource());
+			fail();
+		} catch (IllegalArgumentException ex) {
+		}
+		try {
+			new MacroRow(new Row(64, new Rule(6), Boundaries.fixed, UpdatePattern.synchronous, 0));
+			fail();
+		} catch (IllegalArgumentException ex) {
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ObserverTest extends TestCase {
+
+	public void testChangeSet() {
+		ChangeSet changes = new ChangeSet(5000);
+		changes.flip(3);
+		changes.flip(4095);
+		changes.flip(4999);
+		changes.flip(700);
+		changes.flip(700);
+		assertEquals(3, changes.getCount());
+		assertEquals(3, changes.nextChanged(0));
+		assertEquals(4095, changes.nextChanged(4));
+		assertEquals(4999, changes.nextChanged(4096));
+		assertEquals(-1, changes.nextChanged(5000));
+		assertFalse(changes.isChanged(700));
+		changes.addValue(1.5);
+		changes.clear();
+		assertEquals(0, changes.getCount());
+		assertEquals(-1, changes.nextChanged(0));
+		assertEquals(0, changes.getValueDelta(), 0);
+	}
+
+	private static List<Lattice> lattices() {
+		List<Lattice> lattices = new ArrayList<Lattice>();
+		Rule rule = new Rule(6);
+		lattices.add(new Row(150, rule, Boundaries.reflective, UpdatePattern.oasEqClocked10, (String) null, 0.5, new RandomSource(1)));
+		lattices.add(new Row(150, rule, Boundaries.fixed, UpdatePattern.synchronous, (String) null, 0.6, new RandomSource(2)));
+		lattices.add(new ArrayRow(150, rule, Boundaries.periodic, UpdatePattern.synchronous, (String) null, 0.6, new RandomSource(3)));
+		lattices.add(new ArrayRow(150, rule, Boundaries.adiabatic, UpdatePattern.rasRandomOrder, (String) null, 0.5, new RandomSource(4)));
+		lattices.add(new ArrayRow(150, rule, Boundaries.periodic, UpdatePattern.oasEqClocked60, (String) null, 0.5, new RandomSource(5)));
+		lattices.add(new BitRow(new ArrayRow(150, rule, Boundaries.periodic, UpdatePattern.synchronous, (String) null, 0, new RandomSource(6))));
+		lattices.add(new ChunkedRow(150, rule, Boundaries.periodic, UpdatePattern.rasRandomIndependent10, null, 0.5, new RandomSource(7)));
+		lattices.add(new ChunkedRow(150, rule, Boundaries.reflective, UpdatePattern.synchronous, null, 0.5, new RandomSource(8)));
+		return lattices;
+	}
+
+	public void testSameAsScanningTheRow() {
+		for (Lattice lattice : lattices()) {
+			String name = lattice.getClass().getSimpleName() + " " + lattice.getUpdatePattern();
+			int size = lattice.getSize();
+			ChangeSet changes = new ChangeSet(size);
+			((ChangeTracking) lattice).setChanges(changes);
+			DensityObserver density = new DensityObserver();
+			ValueObserver value = new ValueObserver();
+			HammingObserver hamming = new HammingObserver();
+			BlockEntropyObserver entropy = new BlockEntropyObserver();
+			CorrelationObserver correlation = new CorrelationObserver(5);
+			Observer observers[] = { density, value, hamming, entropy, correlation };
+			for (Observer observer : observers)
+				observer.start(lattice);
+			for (int t = 0; t < 40; t++) {
+				String previous = lattice.toString();
+				lattice = lattice.next();
+				for (Observer observer : observers)
+					observer.step(lattice, changes);
+				String cells = lattice.toString();
+				assertEquals(name, lattice.getOnes(), density.getOnes());
+				assertEquals(name, lattice.getValue(), value.getValue(), 1e-9);
+				int distance = 0;
+				for (int i = 0; i < size; i++)
+					if (cells.charAt(i) != previous.charAt(i))
+						distance++;
+				assertEquals(name, distance, hamming.getDistance());
+				for (int k = 1; k <= BlockEntropyObserver.MAX_BLOCK; k++)
+					assertEquals(name + " k " + k, entropy(cells, k), entropy.getEntropy(k), 1e-9);
+				for (int r = 1; r <= 5; r++)
+					assertEquals(name + " r " + r, correlation(cells, r), correlation.getCorrelation(r), 1e-12);
+			}
+			assertEquals(40, entropy.getStats(3).getCount());
+			assertEquals(40, correlation.getStats(1).getCount());
+		}
+	}
+
+	private static double entropy(String cells, int k) {
+		int counts[] = new int[1 << k];
+		int windows = cells.length() - k + 1;
+		for (int s = 0; s < windows; s++) {
+			int block = 0;
+			for (int j = 0; j < k; j++)
+				if (cells.charAt(s + j) == '1')
+					block |= 1 << j;
+			counts[block]++;
+		}
+		double h = 0;
+		for (int c : counts)
+			if (c > 0)
+				h -= c * 1d / windows * Math.log(c * 1d / windows) / Math.log(2);
+		return h;
+	}
+
+	private static double correlation(String cells, int r) {
+		int n = cells.length();
+		int ones = 0;
+		int pairs = 0;
+		for (int i = 0; i < n; i++) {
+			if (cells.charAt(i) == '1')
+				ones++;
+			if (i + r < n && cells.charAt(i) == '1' && cells.charAt(i + r) == '1')
+				pairs++;
+		}
+		double density = ones * 1d / n;
+		return pairs * 1d / (n - r) - density * density;
+	}
+
+	public void testSimulation() throws Exception {
+		Configuration configuration = new Configuration(6, 300, Boundaries.periodic, UpdatePattern.synchronous, 120, 0, null, 9);
+		Simulation simulation = new Simulation(configuration, Output.noOutput, ColorScheme.noColor);
+		DensityObserver density = new DensityObserver();
+		simulation.addObserver(density);
+		Stats stats = simulation.run();
+		// every step observed, no cycle shortcut
+		assertEquals(120, density.getStats().getCount());
+		assertEquals(0, simulation.getPeriod());
+		assertEquals(120 - Simulation.START_MEANS_FROM_STEP, stats.getCount());
+	}
+
+}
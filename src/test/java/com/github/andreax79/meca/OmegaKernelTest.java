@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class OmegaKernelTest extends TestCase {
+
+	public void testSameResultsAsScalarKernel() {
+		OmegaKernel kernel = OmegaKernel.getInstance();
+		OmegaKernel scalar = new OmegaKernel.ScalarOmegaKernel();
+		Random random = new Random(1);
+		int size = 1000;
+		boolean state[] = new boolean[size];
+		double omega[] = new double[size];
+		for (double alpha : new double[] { 0, 0.5, 0.55, 0.75, 0.99 }) {
+			double bigOmega = 1.0 / (1.0 - alpha);
+			for (int i = 0; i < size; i++) {
+				state[i] = random.nextBoolean();
+				omega[i] = random.nextInt(4) == 0 ? 0.5 : random.nextDouble() * bigOmega;
+			}
+			for (int n = 0; n < 16; n++) {
+				Rule rule = new Rule(n);
+				for (int d = -1; d <= 1; d += 2) {
+					boolean expectedState[] = new boolean[size];
+					double expectedOmega[] = new double[size];
+					boolean actualState[] = new boolean[size];
+					double actualOmega[] = new double[size];
+					scalar.update(rule, alpha, bigOmega, state, omega, d, expectedState, expectedOmega, 1, size - 1);
+					kernel.update(rule, alpha, bigOmega, state, omega, d, actualState, actualOmega, 1, size - 1);
+					for (int i = 0; i < size; i++) {
+						assertEquals(kernel.getName() + " " + rule + " alpha " + alpha, expectedState[i], actualState[i]);
+						assertEquals(expectedOmega[i], actualOmega[i], 0);
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class ParallelStepperTest extends TestCase {
+
+	// counts the units stepped and fails on request
+	private static class CountingRow implements ParallelStepper.Chunked {
+		
+		AtomicInteger units = new AtomicInteger();
+		int generations;
+		int failAt = -1;
+		
+		public int getChunkUnits() {
+			return 10;
+		}
+		
+		public void stepChunk(int from, int to) {
+			if (generations == failAt && from > 0)
+				throw new IllegalStateException("failed");
+			units.addAndGet(to - from);
+		}
+		
+		public void endGeneration() {
+			assertEquals(10 * (generations + 1), units.get());
+			generations++;
+		}
+		
+	}
+
+	public void testGenerations() {
+		ParallelStepper stepper = new ParallelStepper(3);
+		CountingRow row = new CountingRow();
+		// the workers are reused between the calls
+		for (int g = 0; g < 1000; g++)
+			stepper.advance(row, 1);
+		stepper.advance(row, 500);
+		assertEquals(1500, row.generations);
+		stepper.shutdown();
+	}
+
+	public void testWorkerFailure() {
+		ParallelStepper stepper = new ParallelStepper(4);
+		CountingRow row = new CountingRow();
+		row.failAt = 3;
+		try {
+			stepper.advance(row, 10);
+			fail();
+		} catch (IllegalStateException ex) {
+			assertEquals("failed", ex.getMessage());
+		}
+		assertEquals(3, row.generations);
+		try {
+			stepper.advance(row, 1);
+			fail();
+		} catch (IllegalStateException ex) {
+		}
+	}
+
+	private static int stepperThreads() {
+		int count = 0;
+		for (Thread thread : Thread.getAllStackTraces().keySet())
+			if (thread.getName().equals("meca-stepper") && thread.isAlive())
+				count++;
+		return count;
+	}
+
+	public void testFailedRunStopsTheWorkers() throws Exception {
+		int before = stepperThreads();
+		for (double alpha : new double[] { 0, 0.5 }) {
+			Simulation simulation = new Simulation(new Configuration(6, 1000, Boundaries.periodic, UpdatePattern.synchronous, 100, alpha, null, 1),
+					Output.noOutput, ColorScheme.noColor);
+			simulation.setThreads(4);
+			simulation.setListener((lattice, stats) -> {
+				if (lattice.getT() == 10)
+					throw new IllegalStateException("listener");
+			});
+			try {
+				simulation.run();
+				fail();
+			} catch (IllegalStateException ex) {
+				assertEquals("listener", ex.getMessage());
+			}
+		}
+		long deadline = System.nanoTime() + 5000000000L;
+		while (stepperThreads() > before && System.nanoTime() < deadline)
+			Thread.sleep(10);
+		assertEquals(before, stepperThreads());
+	}
+
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+
+public class PngWriterTest extends TestCase {
+
+	public void testReadBack() throws IOException {
+		int width = 301;
+		int height = 700;
+		int pixels[] = new int[width * height];
+		Random random = new Random(7);
+		for (int i = 0; i < pixels.length; i++)
+			pixels[i] = random.nextInt(8) == 0 ? random.nextInt(1 << 24) : 0xffffff;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PngWriter writer = new PngWriter(out, width, height);
+		for (int y = 0; y < height; y++)
+			writer.writeRow(pixels, y * width);
+		writer.close();
+		
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(width, image.getWidth());
+		assertEquals(height, image.getHeight());
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				assertEquals(pixels[y * width + x], image.getRGB(x, y) & 0xffffff);
+	}
+
+	public void testMissingRows() throws IOException {
+		PngWriter writer = new PngWriter(new ByteArrayOutputStream(), 10, 10);
+		writer.writeRow(new int[10], 0);
+		try {
+			writer.close();
+			fail();
+		} catch (IOException ex) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import java.util.SplittableRandom;
+
+import junit.framework.TestCase;
+
+public class RandomSourceTest extends TestCase {
+
+	public void testSameSequenceAsSplittableRandom() {
+		SplittableRandom expected = new SplittableRandom(42);
+		RandomSource actual = new RandomSource(42);
+		for (int i = 0; i < 1000; i++)
+			assertEquals(expected.nextLong(), actual.nextLong());
+		SplittableRandom expectedSplit = expected.split();
+		RandomSource actualSplit = actual.split();
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(expectedSplit.nextLong(), actualSplit.nextLong());
+			assertEquals(expected.nextLong(), actual.nextLong());
+		}
+	}
+
+	public void testRestoreState() {
+		RandomSource random = new RandomSource(7);
+		random.nextLong();
+		RandomSource copy = new RandomSource(random.getSeed(), random.getGamma());
+		for (int i = 0; i < 100; i++)
+			assertEquals(random.nextInt(1000), copy.nextInt(1000));
+	}
+
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class RendererTest extends TestCase {
+
+	public void testPalettesMatchCellColors() {
+		Row row = new Row(500, new Rule(6), Boundaries.periodic, UpdatePattern.synchronous, 0.7);
+		for (int t = 0; t < 20; t++) {
+			for (int j = 0; j < row.getSize(); j++) {
+				Cell cell = row.getCell(j);
+				int rgb = Renderer.omegaColor(cell.getState(), cell.getOmega(), cell.getBigOmega());
+				Color color = cell.getOmegaColor();
+				assertEquals(color.getRed(), rgb >> 16 & 0xff, 1);
+				assertEquals(color.getGreen(), rgb >> 8 & 0xff, 1);
+				assertEquals(color.getBlue(), rgb & 0xff, 1);
+				if (cell.getState())
+					assertEquals(cell.getColor().getRGB() & 0xffffff, Renderer.activationColor(cell.getActivation()));
+			}
+			row = new Row(row);
+		}
+	}
+
+	public void testSameImageFromRowAndArrayRow() throws IOException {
+		for (ColorScheme colorScheme : new ColorScheme[] { ColorScheme.noColor, ColorScheme.omegaColor }) {
+			Row row = new Row(100, new Rule(9), Boundaries.reflective, UpdatePattern.rasRandomOrder, 0.5, new RandomSource(3));
+			ArrayRow arrayRow = new ArrayRow(100, new Rule(9), Boundaries.reflective, UpdatePattern.rasRandomOrder, 0.5, new RandomSource(3));
+			assertTrue(Arrays.equals(render(row, colorScheme), render(arrayRow, colorScheme)));
+		}
+	}
+
+	private byte[] render(Lattice lattice, ColorScheme colorScheme) throws IOException {
+		int cellSize = 3;
+		int steps = 40;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Renderer renderer = new Renderer(new PngWriter(out, cellSize * (lattice.getSize() + 10), cellSize * (steps + 1)), cellSize);
+		for (int t = 0; t < steps; t++) {
+			if (lattice instanceof Row)
+				renderer.drawRow((Row) lattice, colorScheme);
+			else
+				renderer.drawRow((ArrayRow) lattice, colorScheme);
+			if (t > 0)
+				renderer.drawLine(cellSize * lattice.getSize() + t % 7, (t - 1) * cellSize, cellSize * lattice.getSize() + t % 5, t * cellSize, Renderer.RED);
+			renderer.endStep();
+			lattice = lattice.next();
+		}
+		renderer.close();
+		return out.toByteArray();
+	}
+
+}
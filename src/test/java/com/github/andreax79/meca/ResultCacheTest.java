@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import junit.framework.TestCase;
+
+public class ResultCacheTest extends TestCase {
+
+	private Path dir;
+
+	@Override
+	protected void setUp() throws IOException {
+		dir = Files.createTempDirectory("meca");
+	}
+
+	@Override
+	protected void tearDown() throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	private static Simulation simulation(long seed) {
+		return new Simulation(new Configuration(6, 64, Boundaries.periodic, UpdatePattern.rasRandomOrder, 200, 0.5, null, seed),
+				Output.noOutput, ColorScheme.noColor);
+	}
+
+	private static void assertSameStats(Stats expected, Stats actual) {
+		assertEquals(expected.getCount(), actual.getCount());
+		assertEquals(expected.getMeans(), actual.getMeans(), 0);
+		assertEquals(expected.getVariance(), actual.getVariance(), 0);
+		assertEquals(expected.getKurtosis(), actual.getKurtosis(), 0);
+		assertEquals(expected.getError(), actual.getError(), 0);
+	}
+
+	public void testHit() throws IOException {
+		ResultCache cache = new ResultCache(dir);
+		Stats stats = cache.run(simulation(1));
+		assertEquals(1, cache.getMisses());
+		assertSameStats(stats, cache.run(simulation(1)));
+		assertEquals(1, cache.getHits());
+		// another process, another seed
+		ResultCache other = new ResultCache(dir);
+		assertSameStats(stats, other.run(simulation(1)));
+		assertEquals(1, other.getHits());
+		other.run(simulation(2));
+		assertEquals(1, other.getMisses());
+	}
+
+	public void testCycle() throws IOException {
+		Configuration configuration = new Configuration(6, 30, Boundaries.periodic, UpdatePattern.synchronous, 500, 0, null, 4);
+		Simulation computed = new Simulation(configuration, Output.noOutput, ColorScheme.noColor);
+		ResultCache cache = new ResultCache(dir);
+		Stats stats = cache.run(computed);
+		assertTrue(computed.getPeriod() > 0);
+		Simulation cached = new Simulation(configuration, Output.noOutput, ColorScheme.noColor);
+		assertSameStats(stats, cache.run(cached));
+		assertEquals(1, cache.getHits());
+		assertEquals(computed.getTransient(), cached.getTransient());
+		assertEquals(computed.getPeriod(), cached.getPeriod());
+	}
+
+	public void testTrajectory() throws IOException {
+		ResultCache cache = new ResultCache(dir.resolve("cache"));
+		Path trajectory = dir.resolve("run.traj");
+		Simulation simulation = simulation(3);
+		simulation.setTrajectory(trajectory, true);
+		cache.run(simulation);
+		byte expected[] = Files.readAllBytes(trajectory);
+		Files.delete(trajectory);
+		simulation = simulation(3);
+		simulation.setTrajectory(trajectory, true);
+		cache.run(simulation);
+		assertEquals(1, cache.getHits());
+		assertTrue(Arrays.equals(expected, Files.readAllBytes(trajectory)));
+		// without omega it's another run
+		simulation = simulation(3);
+		simulation.setTrajectory(trajectory, false);
+		cache.run(simulation);
+		assertEquals(1, cache.getHits());
+	}
+
+	public void testDamagedEntry() throws IOException {
+		ResultCache cache = new ResultCache(dir);
+		Stats stats = cache.run(simulation(5));
+		Path entry;
+		try (Stream<Path> files = Files.list(dir)) {
+			entry = files.filter(file -> file.toString().endsWith(".stats")).findFirst().get();
+		}
+		Files.write(entry, new byte[] { 1, 2, 3 });
+		assertSameStats(stats, cache.run(simulation(5)));
+		assertEquals(2, cache.getMisses());
+		assertSameStats(stats, cache.run(simulation(5)));
+		assertEquals(1, cache.getHits());
+	}
+
+	public void testEviction() throws IOException {
+		ResultCache cache = new ResultCache(dir);
+		for (long seed = 0; seed < 4; seed++) {
+			cache.run(simulation(seed));
+			// entries age one minute each
+			try (Stream<Path> files = Files.list(dir)) {
+				for (Path file : (Iterable<Path>) files::iterator)
+					Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() - 60000));
+			}
+		}
+		cache.run(simulation(0));
+		assertEquals(1, cache.getHits());
+		long size = Files.size(dir.resolve(ResultCache.hash(ResultCache.key(simulation(0))) + ".stats"));
+		// room for two: the one just used and the newest
+		cache.setMaxBytes(2 * size);
+		cache.evict();
+		cache.run(simulation(0));
+		cache.run(simulation(3));
+		assertEquals(3, cache.getHits());
+		cache.run(simulation(1));
+		cache.run(simulation(2));
+		assertEquals(3, cache.getHits());
+	}
+
+	public void testDeterministicRunIgnoresTheSeed() throws IOException {
+		ResultCache cache = new ResultCache(dir);
+		Stats stats = cache.run(new Simulation(new Configuration(6, 64, Boundaries.periodic, UpdatePattern.synchronous, 200, 0.5, "0110100", 1),
+				Output.noOutput, ColorScheme.noColor));
+		assertSameStats(stats, cache.run(new Simulation(new Configuration(6, 64, Boundaries.periodic, UpdatePattern.synchronous, 200, 0.5, "0110100", 2),
+				Output.noOutput, ColorScheme.noColor)));
+		assertEquals(1, cache.getHits());
+		// a random initial row or update order depends on it
+		cache.run(new Simulation(new Configuration(6, 64, Boundaries.periodic, UpdatePattern.synchronous, 200, 0.5, null, 2), Output.noOutput, ColorScheme.noColor));
+		cache.run(new Simulation(new Configuration(6, 64, Boundaries.periodic, UpdatePattern.rasRandomOrder, 200, 0.5, "0110100", 2), Output.noOutput, ColorScheme.noColor));
+		assertEquals(1, cache.getHits());
+		assertEquals(3, cache.getMisses());
+	}
+
+	public void testLongPattern() throws IOException {
+		// a key over the 64 KB of writeUTF
+		char pattern[] = new char[100000];
+		for (int i = 0; i < pattern.length; i++)
+			pattern[i] = (i * 7 % 3 == 0) ? '1' : '0';
+		Configuration configuration = new Configuration(6, 1000, Boundaries.periodic, UpdatePattern.synchronous, 100, 0, new String(pattern), 1);
+		ResultCache cache = new ResultCache(dir);
+		Stats stats = cache.run(new Simulation(configuration, Output.noOutput, ColorScheme.noColor));
+		assertSameStats(stats, cache.run(new Simulation(configuration, Output.noOutput, ColorScheme.noColor)));
+		assertEquals(1, cache.getHits());
+	}
+
+	public void testKey() {
+		Simulation simulation = simulation(7);
+		String key = ResultCache.key(simulation);
+		assertEquals(key, ResultCache.key(simulation(7)));
+		assertFalse(key.equals(ResultCache.key(simulation(8))));
+		simulation.setDetectCycles(false);
+		assertFalse(key.equals(ResultCache.key(simulation)));
+		assertEquals(64, ResultCache.hash(key).length());
+	}
+
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import junit.framework.TestCase;
+
+public class RunMonitorTest extends TestCase {
+
+	private static Configuration configuration() {
+		return new Configuration(6, 200, Boundaries.periodic, UpdatePattern.rasRandomOrder, 300, 0.5, null, 9);
+	}
+
+	public void testMonitorFollowsTheRun() throws Exception {
+		Simulation simulation = new Simulation(configuration(), Output.noOutput, ColorScheme.noColor);
+		RunMonitor monitor = new RunMonitor();
+		simulation.setMonitor(monitor);
+		monitor.register();
+		try {
+			Stats stats = simulation.run();
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(RunMonitor.OBJECT_NAME);
+			assertEquals(300, server.getAttribute(name, "Step"));
+			assertEquals(RunMonitor.DONE, server.getAttribute(name, "Phase"));
+			assertEquals(stats.getMeans(), (Double) server.getAttribute(name, "DensityMean"), 0);
+			assertEquals(stats.getVariance(), (Double) server.getAttribute(name, "DensityVariance"), 0);
+			assertTrue((Double) server.getAttribute(name, "CellsPerSecond") > 0);
+			assertEquals(0L, server.getAttribute(name, "EtaSeconds"));
+		} finally {
+			monitor.unregister();
+		}
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(RunMonitor.OBJECT_NAME)));
+	}
+
+	public void testCellsPerSecondCountsUpdatedCells() throws InterruptedException {
+		RunMonitor monitor = new RunMonitor();
+		monitor.start(new Configuration(6, 1000000, Boundaries.periodic, UpdatePattern.rasRandomIndependent, 1000, 0.5, null, 9), 0);
+		monitor.update(1000, new Stats());
+		Thread.sleep(20);
+		// a single cell per step: at most 1000 cells in 20 ms, not 1000 * width
+		assertTrue(monitor.getCellsPerSecond() > 0);
+		assertTrue(monitor.getCellsPerSecond() <= 1000 / 0.02);
+	}
+
+	public void testSameResultsWithMonitor() throws IOException {
+		Stats plain = new Simulation(configuration(), Output.noOutput, ColorScheme.noColor).run();
+		Simulation simulation = new Simulation(configuration(), Output.noOutput, ColorScheme.noColor);
+		simulation.setMonitor(new RunMonitor());
+		Stats monitored = simulation.run();
+		assertEquals(plain.getMeans(), monitored.getMeans(), 0);
+		assertEquals(plain.getVariance(), monitored.getVariance(), 0);
+	}
+
+	public void testEventsAreRecorded() throws IOException {
+		File file = File.createTempFile("meca", ".jfr");
+		try {
+			Recording recording = new Recording();
+			recording.enable(StepEvent.class);
+			recording.enable(StatisticsEvent.class);
+			recording.start();
+			new Simulation(configuration(), Output.noOutput, ColorScheme.noColor).run();
+			// a sparse pattern updates 10 cells per step, not the whole width
+			new Simulation(new Configuration(6, 200, Boundaries.periodic, UpdatePattern.rasRandomIndependent10, 100, 0.5, null, 9), Output.noOutput, ColorScheme.noColor).run();
+			recording.stop();
+			recording.dump(file.toPath());
+			recording.close();
+			int steps = 0;
+			int sparseSteps = 0;
+			int statistics = 0;
+			for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+				if (event.getEventType().getName().equals("com.github.andreax79.meca.Step")) {
+					if (event.getLong("cells") == 10) {
+						sparseSteps++;
+					} else {
+						assertEquals(200, event.getLong("cells"));
+						steps++;
+					}
+				} else if (event.getEventType().getName().equals("com.github.andreax79.meca.Statistics")) {
+					statistics++;
+				}
+			}
+			assertEquals(300, steps);
+			assertEquals(100, sparseSteps);
+			assertEquals(250 + 50, statistics);
+		} finally {
+			file.delete();
+		}
+	}
+
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class ServerTest extends TestCase {
+
+	private Server server;
+
+	@Override
+	protected void setUp() throws IOException {
+		server = new Server(0, 1, 0);
+		server.start();
+	}
+
+	@Override
+	protected void tearDown() {
+		server.stop();
+	}
+
+	private HttpURLConnection open(String path) throws IOException {
+		return (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+	}
+
+	// the data lines of the events with the given name
+	private static List<String> read(BufferedReader in, String name) throws IOException {
+		List<String> data = new ArrayList<String>();
+		String event = null;
+		for (String line = in.readLine(); line != null; line = in.readLine()) {
+			if (line.startsWith("event: "))
+				event = line.substring(7);
+			else if (line.startsWith("data: ") && event.equals(name))
+				data.add(line.substring(6));
+		}
+		return data;
+	}
+
+	public void testStreamsTheRun() throws IOException {
+		Configuration configuration = new Configuration(6, 40, Boundaries.reflective, UpdatePattern.rasRandomOrder, 80, 0.5, null, 11);
+		final List<String> expected = new ArrayList<String>();
+		Simulation simulation = new Simulation(configuration, Output.noOutput, ColorScheme.noColor);
+		simulation.setListener((lattice, stats) -> expected.add("{\"t\":" + lattice.getT() + ",\"row\":\"" + lattice + "\"}"));
+		Stats stats = simulation.run();
+
+		HttpURLConnection connection = open("/run?rule=6&width=40&boundaries=reflective&update=rasRandomOrder&steps=80&alpha=0.5&seed=11");
+		assertEquals(200, connection.getResponseCode());
+		assertTrue(connection.getContentType().startsWith("text/event-stream"));
+		List<String> rows;
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+			rows = read(in, "row");
+		}
+		assertEquals(expected, rows);
+
+		connection = open("/run?rule=6&width=40&boundaries=reflective&update=rasRandomOrder&steps=80&alpha=0.5&seed=11&rows=false");
+		List<String> done;
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+			done = read(in, "done");
+		}
+		assertEquals(1, done.size());
+		assertTrue(done.get(0).contains("\"count\":" + stats.getCount() + ",\"means\":" + stats.getMeans() + ",\"variance\":" + stats.getVariance()));
+	}
+
+	public void testInvalidJobs() throws IOException {
+		assertEquals(400, open("/run?width=10&steps=10").getResponseCode());
+		assertEquals(400, open("/run?rule=16&width=10&steps=10").getResponseCode());
+		assertEquals(400, open("/run?rule=6&width=10&steps=10&update=sometimes").getResponseCode());
+		assertEquals(400, open("/run?rule=6&width=10&steps=10&alpha=2").getResponseCode());
+	}
+
+	public void testJobTooLarge() throws IOException {
+		server.setMaxCells(1000);
+		assertEquals(200, open("/run?rule=6&width=10&steps=100").getResponseCode());
+		assertEquals(400, open("/run?rule=6&width=10&steps=101").getResponseCode());
+		// no overflow of width * steps
+		assertEquals(400, open("/run?rule=6&width=2147483647&steps=2147483647").getResponseCode());
+	}
+
+	public void testClientGoneStopsTheJob() throws Exception {
+		server.heartbeatNanos = 10000000L;
+		// nothing is streamed until the end: only the heartbeat notices the client
+		HttpURLConnection connection = open("/run?rule=6&width=1000&steps=10000000&alpha=0.5&every=100000000");
+		BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+		while (!"event: started".equals(in.readLine()))
+			;
+		assertEquals(1, server.getRunning());
+		connection.disconnect();
+		long deadline = System.nanoTime() + 10000000000L;
+		while (server.getRunning() > 0 && System.nanoTime() < deadline)
+			Thread.sleep(10);
+		assertEquals(0, server.getRunning());
+	}
+
+	public void testFullQueue() throws IOException {
+		HttpURLConnection first = open("/run?rule=6&width=1000&steps=10000000&alpha=0.5");
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(first.getInputStream(), StandardCharsets.UTF_8))) {
+			assertEquals("event: queued", in.readLine());
+			// one worker and no queue: taken
+			assertEquals(503, open("/run?rule=6&width=10&steps=10").getResponseCode());
+			assertEquals(1, server.getRunning() + server.getQueued());
+		}
+		first.disconnect();
+	}
+
+	public void testParameters() {
+		Map<String, String> parameters = new HashMap<String, String>();
+		Server.parse("rule=6&width=10&steps=20&pattern=0%2B1&seed=5&flag", parameters);
+		assertEquals("0+1", parameters.get("pattern"));
+		assertEquals("", parameters.get("flag"));
+		Configuration configuration = Server.configuration(parameters);
+		assertEquals(new Configuration(6, 10, Boundaries.periodic, UpdatePattern.synchronous, 20, 0, "0+1", 5), configuration);
+	}
+
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class SlicedRowTest extends TestCase {
+
+	public void testTranspose() {
+		Random random = new Random(1);
+		long a[] = new long[64];
+		for (int i = 0; i < 64; i++)
+			a[i] = random.nextLong();
+		long b[] = a.clone();
+		SlicedRow.transpose(b);
+		for (int i = 0; i < 64; i++)
+			for (int j = 0; j < 64; j++)
+				assertEquals((a[i] >>> j) & 1, (b[j] >>> i) & 1);
+	}
+
+	public void testSameRowsAsBitRow() {
+		for (int n = 0; n < 16; n++) {
+			Rule rule = new Rule(n);
+			for (Boundaries boundaries : Boundaries.values()) {
+				for (int size : new int[] { 1, 2, 63, 64, 100, 130 }) {
+					SlicedRow sliced = new SlicedRow(size, rule, boundaries, 64);
+					BitRow rows[] = new BitRow[64];
+					for (int k = 0; k < 64; k++) {
+						rows[k] = new BitRow(new ArrayRow(size, rule, boundaries, UpdatePattern.synchronous, 0, new RandomSource(k)));
+						sliced.setReplica(k, rows[k]);
+					}
+					int ones[] = new int[64];
+					for (int t = 0; t < 20; t++) {
+						sliced.getOnes(ones);
+						for (int k = 0; k < 64; k += 7) {
+							assertEquals(rule + " " + boundaries + " size " + size + " t " + t, rows[k].toString(), sliced.toString(k));
+							assertEquals(rows[k].getOnes(), ones[k]);
+							assertEquals(rows[k].getOnes(), sliced.getOnes(k));
+						}
+						for (int k = 0; k < 64; k++)
+							rows[k].step();
+						sliced.step();
+					}
+				}
+			}
+		}
+	}
+
+}
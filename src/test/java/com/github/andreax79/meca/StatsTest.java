@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+package com.github.andreax79.meca;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class StatsTest extends TestCase {
+
+	private static double[] sample(int n, long seed) {
+		Random random = new Random(seed);
+		double x[] = new double[n];
+		for (int i = 0; i < n; i++)
+			x[i] = 0.3 + random.nextDouble() * random.nextDouble();
+		return x;
+	}
+
+	public void testMomentsMatchTwoPass() {
+		double x[] = sample(10000, 1);
+		Stats stats = new Stats();
+		for (double v : x)
+			stats.add(v);
+		double mean = 0;
+		for (double v : x)
+			mean += v;
+		mean /= x.length;
+		double m2 = 0, m3 = 0, m4 = 0, min = 1e9, max = -1e9;
+		for (double v : x) {
+			double d = v - mean;
+			m2 += d * d;
+			m3 += d * d * d;
+			m4 += d * d * d * d;
+			min = Math.min(min, v);
+			max = Math.max(max, v);
+		}
+		assertEquals(x.length, stats.getCount());
+		assertEquals(mean, stats.getMeans(), 1e-12);
+		assertEquals(m2 / x.length, stats.getVariance(), 1e-12);
+		assertEquals(Math.sqrt(x.length) * m3 / Math.pow(m2, 1.5), stats.getSkewness(), 1e-9);
+		assertEquals(x.length * m4 / (m2 * m2) - 3, stats.getKurtosis(), 1e-9);
+		assertEquals(min, stats.getMin(), 0);
+		assertEquals(max, stats.getMax(), 0);
+	}
+
+	public void testMergeMatchesSingleAccumulator() {
+		double x[] = sample(5000, 2);
+		Stats all = new Stats();
+		Stats a = new Stats();
+		Stats b = new Stats();
+		for (int i = 0; i < x.length; i++) {
+			all.add(x[i]);
+			(i < 1234 ? a : b).add(x[i]);
+		}
+		a.merge(b);
+		assertEquals(all.getCount(), a.getCount());
+		assertEquals(all.getMeans(), a.getMeans(), 1e-12);
+		assertEquals(all.getVariance(), a.getVariance(), 1e-12);
+		assertEquals(all.getSkewness(), a.getSkewness(), 1e-9);
+		assertEquals(all.getKurtosis(), a.getKurtosis(), 1e-9);
+		assertEquals(all.getMin(), a.getMin(), 0);
+		assertEquals(all.getMax(), a.getMax(), 0);
+		assertFalse(Double.isNaN(a.getError()));
+	}
+
+	public void testBatchMeansErrorOfIndependentSamples() {
+		double x[] = sample(100000, 3);
+		Stats stats = new Stats();
+		for (double v : x)
+			stats.add(v);
+		double naive = Math.sqrt(stats.getVariance() / x.length);
+		assertTrue(stats.getError() > naive / 2 && stats.getError() < naive * 2);
+	}
+
+	public void testEmpty() {
+		Stats stats = new Stats();
+		assertTrue(Double.isNaN(stats.getMeans()));
+		assertTrue(Double.isNaN(stats.getError()));
+	}
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class SweepTest extends TestCase {
+
+	public void testParseInts() {
+		assertTrue(Arrays.equals(new int[] { 6 }, Sweep.parseInts("6")));
+		assertTrue(Arrays.equals(new int[] { 0, 1, 2, 3 }, Sweep.parseInts("0-3")));
+		assertTrue(Arrays.equals(new int[] { 0, 1, 2, 1, 3 }, Sweep.parseInts("0-2,1,3")));
+		assertTrue(Arrays.equals(new int[] { 5 }, Sweep.parseInts(" 5-5 ")));
+		assertTrue(Arrays.equals(new int[] { -2, -1, 0 }, Sweep.parseInts("-2-0")));
+		assertEquals(16, Sweep.parseInts("0-15").length);
+		for (String invalid : new String[] { "", "a", "3-1", "1-", "1,,2", "0.5" }) {
+			try {
+				Sweep.parseInts(invalid);
+				fail(invalid);
+			} catch (NumberFormatException ex) {
+			}
+		}
+	}
+
+	public void testParseDoubles() {
+		assertTrue(Arrays.equals(new double[] { 0.5, 0.75 }, Sweep.parseDoubles("0.5,0.75")));
+		double values[] = Sweep.parseDoubles("0.5:0.95:0.05");
+		// both ends included despite the rounding of the step
+		assertEquals(10, values.length);
+		for (int i = 0; i < values.length; i++)
+			assertEquals(0.5 + i * 0.05, values[i], 1e-12);
+		assertEquals(0.95, values[9], 1e-12);
+		assertEquals(3, Sweep.parseDoubles("0:1:0.5").length);
+		assertEquals(2, Sweep.parseDoubles("0:0.9:0.5").length);
+		assertTrue(Arrays.equals(new double[] { 0.3 }, Sweep.parseDoubles("0.3:0.3:0.1")));
+		assertTrue(Arrays.equals(new double[] { 0, 0.5, 1, 0.2 }, Sweep.parseDoubles("0:1:0.5,0.2")));
+		for (String invalid : new String[] { "", "x", "1:0:0.1", "0:1:0", "0:1:-0.1", "0:1", "0:1:0.1:2" }) {
+			try {
+				Sweep.parseDoubles(invalid);
+				fail(invalid);
+			} catch (NumberFormatException ex) {
+			}
+		}
+	}
+
+	public void testEnumerationOrder() {
+		Sweep sweep = new Sweep(new int[] { 6, 9 }, new Boundaries[] { Boundaries.periodic, Boundaries.fixed },
+				new UpdatePattern[] { UpdatePattern.synchronous }, new double[] { 0, 0.5 }, new int[] { 10, 20 }, 5, null, 1);
+		List<Configuration> configurations = sweep.getConfigurations();
+		assertEquals(16, configurations.size());
+		// rules outermost, widths innermost
+		assertEquals(6, configurations.get(0).getRuleNumber());
+		assertEquals(10, configurations.get(0).getWidth());
+		assertEquals(20, configurations.get(1).getWidth());
+		assertEquals(0.5, configurations.get(2).getAlpha());
+		assertEquals(Boundaries.fixed, configurations.get(4).getBoundaries());
+		assertEquals(9, configurations.get(8).getRuleNumber());
+		// the seeds replay from the seed of the sweep and differ between runs
+		Sweep again = new Sweep(new int[] { 6, 9 }, new Boundaries[] { Boundaries.periodic, Boundaries.fixed },
+				new UpdatePattern[] { UpdatePattern.synchronous }, new double[] { 0, 0.5 }, new int[] { 10, 20 }, 5, null, 1);
+		assertEquals(configurations, again.getConfigurations());
+		assertFalse(configurations.get(0).getSeed() == configurations.get(1).getSeed());
+	}
+
+	public void testSameStatsAsSimulations() throws IOException {
+		for (int parallelism : new int[] { 1, 4 }) {
+			Sweep sweep = new Sweep(new int[] { 6, 9 }, new Boundaries[] { Boundaries.periodic, Boundaries.reflective },
+					new UpdatePattern[] { UpdatePattern.synchronous, UpdatePattern.rasRandomOrder }, new double[] { 0, 0.5 }, new int[] { 60 }, 300, null, 42);
+			sweep.setParallelism(parallelism);
+			Map<Configuration, Stats> table = sweep.run();
+			assertEquals(16, table.size());
+			int i = 0;
+			for (Map.Entry<Configuration, Stats> entry : table.entrySet()) {
+				Configuration configuration = entry.getKey();
+				// in enumeration order whatever the parallelism
+				assertEquals(sweep.getConfigurations().get(i++), configuration);
+				Stats stats = new Simulation(configuration, Output.noOutput, ColorScheme.noColor).run();
+				assertEquals(configuration.toString(), stats.getMeans(), entry.getValue().getMeans(), 0);
+				assertEquals(configuration.toString(), stats.getVariance(), entry.getValue().getVariance(), 0);
+				assertEquals(configuration.toString(), stats.getCount(), entry.getValue().getCount());
+			}
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			Sweep.print(table, new PrintStream(bytes, true));
+			String lines[] = bytes.toString().split("\n");
+			assertEquals(17, lines.length);
+			assertTrue(lines[0].startsWith("rule"));
+			assertTrue(lines[1].startsWith("6 "));
+			assertTrue(lines[1].endsWith(String.valueOf(sweep.getConfigurations().get(0).getSeed())));
+		}
+	}
+
+	public void testInvalidParallelism() {
+		Sweep sweep = new Sweep(new int[] { 6 }, new Boundaries[] { Boundaries.periodic }, new UpdatePattern[] { UpdatePattern.synchronous },
+				new double[] { 0 }, new int[] { 10 }, 5, null, 1);
+		try {
+			sweep.setParallelism(0);
+			fail();
+		} catch (IllegalArgumentException ex) {
+		}
+	}
+
+}
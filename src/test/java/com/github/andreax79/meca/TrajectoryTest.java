@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2009 Andrea Bonomi - <andrea.bonomi@gmail.com>
+ *
+ * https://github.com/andreax79/one-neighbor-binary-cellular-automata
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 2 of the License, or (at your
+ * option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.)
+ *
+ */
+
+
+package com.github.andreax79.meca;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.LongBuffer;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+
+import junit.framework.TestCase;
+
+public class TrajectoryTest extends TestCase {
+
+	public void testReadBackRows() throws IOException {
+		File file = File.createTempFile("meca", ".traj");
+		try {
+			for (boolean bitRow : new boolean[] { false, true }) {
+				double alpha = bitRow ? 0 : 0.6;
+				Configuration configuration = new Configuration(6, 130, Boundaries.reflective, UpdatePattern.synchronous, 200, alpha, null, 11);
+				Lattice lattice = new ArrayRow(130, new Rule(6), Boundaries.reflective, UpdatePattern.synchronous, alpha, new RandomSource(11));
+				if (bitRow)
+					lattice = new BitRow(lattice);
+				ArrayRow replay = new ArrayRow(130, new Rule(6), Boundaries.reflective, UpdatePattern.synchronous, alpha, new RandomSource(11));
+				
+				TrajectoryWriter writer = new TrajectoryWriter(file.toPath(), configuration, true);
+				for (int t = 0; t < 200; t++) {
+					writer.append(lattice);
+					lattice = lattice.next();
+				}
+				writer.close();
+				
+				Trajectory trajectory = new Trajectory(file.toPath());
+				assertEquals(6, trajectory.getRuleNumber());
+				assertEquals(130, trajectory.getWidth());
+				assertEquals(Boundaries.reflective, trajectory.getBoundaries());
+				assertEquals(UpdatePattern.synchronous, trajectory.getUpdatePattern());
+				assertEquals(alpha, trajectory.getAlpha());
+				assertEquals(11, trajectory.getSeed());
+				assertEquals(200, trajectory.getRows());
+				assertTrue(trajectory.hasOmega());
+				for (int t = 0; t < 200; t++) {
+					assertEquals(replay.getOnes(), trajectory.getOnes(t));
+					LongBuffer row = trajectory.getRow(t);
+					assertEquals(3, row.remaining());
+					for (int i = 0; i < 130; i++) {
+						assertEquals(replay.getValue(i), trajectory.getState(t, i));
+						assertEquals(replay.getValue(i), (row.get(i >> 6) >>> i & 1) != 0);
+						assertEquals(replay.getOmega(i) / replay.getBigOmega(), trajectory.getOmega(t, i), 0.5 / 255);
+					}
+					replay.step();
+				}
+				trajectory.close();
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testFailedRunClosesTheFiles() throws IOException {
+		OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		if (!(os instanceof UnixOperatingSystemMXBean))
+			return;
+		File file = File.createTempFile("meca", ".traj");
+		Simulation simulation = new Simulation(new Configuration(6, 100, Boundaries.periodic, UpdatePattern.synchronous, 100, 0.5, "0110", 1),
+				Output.timeSpaceOnly, ColorScheme.omegaColor);
+		File image = new File(simulation.getFileName());
+		try {
+			long open = ((UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount();
+			for (int run = 0; run < 20; run++) {
+				simulation.setTrajectory(file.toPath(), false);
+				simulation.setListener((lattice, stats) -> {
+					if (lattice.getT() == 10)
+						throw new IllegalStateException("listener");
+				});
+				try {
+					simulation.run();
+					fail();
+				} catch (IllegalStateException ex) {
+					assertEquals("listener", ex.getMessage());
+				}
+			}
+			// the trajectory channel and the image stream of every failed run are closed
+			assertTrue(((UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount() < open + 20);
+		} finally {
+			file.delete();
+			image.delete();
+		}
+	}
+
+}